@@ -0,0 +1,194 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// One shared HttpClient per connect timeout so every request to a repository reuses its connections, over HTTP/2 where the server offers it.
+// Only loaded on JDK 11+, see Transport.detect.
+public class HttpClientTransport implements Transport {
+
+    private final Map<Integer, HttpClient> clients = new ConcurrentHashMap<>();
+
+    private HttpClient getClient(int connectTimeout) {
+        return clients.computeIfAbsent(connectTimeout, timeout -> {
+            HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).followRedirects(HttpClient.Redirect.NORMAL);
+            if (timeout > 0) builder.connectTimeout(Duration.ofMillis(timeout));
+            return builder.build();
+        });
+    }
+
+    @Override
+    public Response send(Request request) throws IOException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(request.getUrl().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid url " + request.getUrl(), e);
+        }
+        builder.method(request.getMethod(), HttpRequest.BodyPublishers.noBody());
+        // Only covers waiting for the headers, the body has its own timeout per read
+        if (request.getReadTimeout() > 0) builder.timeout(Duration.ofMillis(request.getReadTimeout()));
+        request.getHeaders().forEach(builder::setHeader);
+        HttpResponse<InputStream> response;
+        try {
+            response = getClient(request.getConnectTimeout()).send(builder.build(), info -> new TimedBody(request.getReadTimeout()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted requesting " + request.getUrl());
+        }
+        return new Response() {
+            @Override
+            public URL getUrl() {
+                return request.getUrl();
+            }
+
+            @Override
+            public int getStatus() {
+                return response.statusCode();
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return response.headers().firstValue(name).orElse(null);
+            }
+
+            @Override
+            public long getContentLength() {
+                return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            }
+
+            @Override
+            public InputStream getBody() {
+                return response.body();
+            }
+
+            @Override
+            public void close() throws IOException {
+                response.body().close();
+            }
+        };
+    }
+
+    // The InputStream HttpClient hands out can block forever on a stalled server, this one gives up after the read timeout.
+    // Asks for one batch of buffers at a time so a slow reader never has more than that in memory.
+    private static class TimedBody extends InputStream implements HttpResponse.BodySubscriber<InputStream> {
+        private static final List<ByteBuffer> END = new ArrayList<>();
+
+        private final BlockingQueue<List<ByteBuffer>> queue = new LinkedBlockingQueue<>();
+        private final int readTimeout;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean closed;
+        private volatile Throwable error;
+        private Iterator<ByteBuffer> buffers = Collections.emptyIterator();
+        private ByteBuffer current;
+        private boolean done;
+
+        private TimedBody(int readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        @Override
+        public CompletionStage<InputStream> getBody() {
+            return CompletableFuture.completedFuture(this);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (closed) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            queue.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            queue.add(END);
+        }
+
+        @Override
+        public void onComplete() {
+            queue.add(END);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (closed) throw new IOException("Stream closed");
+            if (length == 0) return 0;
+            while (current == null || !current.hasRemaining()) {
+                if (buffers.hasNext()) {
+                    current = buffers.next();
+                    continue;
+                }
+                if (done) return -1;
+                List<ByteBuffer> next = poll();
+                if (next == END) {
+                    done = true;
+                    if (error != null) throw error instanceof IOException ? (IOException) error : new IOException(error);
+                    return -1;
+                }
+                buffers = next.iterator();
+                subscription.request(1);
+            }
+            int read = Math.min(length, current.remaining());
+            current.get(bytes, offset, read);
+            return read;
+        }
+
+        private List<ByteBuffer> poll() throws IOException {
+            try {
+                List<ByteBuffer> next = readTimeout > 0 ? queue.poll(readTimeout, TimeUnit.MILLISECONDS) : queue.take();
+                if (next == null) {
+                    close();
+                    throw new SocketTimeoutException("Read timed out");
+                }
+                return next;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted reading response");
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            Flow.Subscription subscription = this.subscription;
+            if (!done && subscription != null) subscription.cancel();
+        }
+    }
+}
@@ -395,7 +395,7 @@ public class JsonArray extends JsonValue implements Iterable<JsonValue> {
     public Iterator<JsonValue> iterator() {
         final Iterator<JsonValue> iterator = values.iterator();
 
-        return new Iterator<>() {
+        return new Iterator<JsonValue>() {
             @Override
             public boolean hasNext() {
                 return iterator.hasNext();
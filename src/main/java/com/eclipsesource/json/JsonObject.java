@@ -673,7 +673,7 @@ public class JsonObject extends JsonValue implements Iterable<Member> {
         final Iterator<String> namesIterator = names.iterator();
         final Iterator<JsonValue> valuesIterator = values.iterator();
 
-        return new Iterator<>() {
+        return new Iterator<Member>() {
             @Override
             public boolean hasNext() {
                 return namesIterator.hasNext();
@@ -0,0 +1,133 @@
+package com.eclipsesource.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
+
+/**
+ * Writes JSON straight to a writer as values are produced, without building a {@link JsonValue}
+ * tree first. Separators are inserted automatically. This implementation is not thread-safe and
+ * does not check that the written structure is well formed.
+ */
+public class JsonStreamWriter implements Closeable {
+
+    private final WritingBuffer buffer;
+    private final JsonWriter writer;
+    // Whether the array or object at each nesting depth already has a value in it.
+    private final BitSet filled = new BitSet();
+    private int depth = 0;
+    private boolean afterName = false;
+
+    /**
+     * Creates a stream writer for the given writer. Writing performance can be improved by using a
+     * {@link java.io.BufferedWriter BufferedWriter}.
+     *
+     * @param writer the writer to write to
+     */
+    public JsonStreamWriter(Writer writer) {
+        if (writer == null) {
+            throw new NullPointerException("writer is null");
+        }
+        buffer = new WritingBuffer(writer, 128);
+        this.writer = new JsonWriter(buffer);
+    }
+
+    public JsonStreamWriter beginArray() throws IOException {
+        beforeValue();
+        writer.writeArrayOpen();
+        filled.clear(++depth);
+        return this;
+    }
+
+    public JsonStreamWriter endArray() throws IOException {
+        depth--;
+        writer.writeArrayClose();
+        return this;
+    }
+
+    public JsonStreamWriter beginObject() throws IOException {
+        beforeValue();
+        writer.writeObjectOpen();
+        filled.clear(++depth);
+        return this;
+    }
+
+    public JsonStreamWriter endObject() throws IOException {
+        depth--;
+        writer.writeObjectClose();
+        return this;
+    }
+
+    /**
+     * Writes the name of the next object member. Must be followed by exactly one value.
+     *
+     * @param name the name of the member
+     * @return this writer, to allow chaining
+     * @throws IOException if an I/O error occurs in the writer
+     */
+    public JsonStreamWriter name(String name) throws IOException {
+        if (filled.get(depth)) {
+            writer.writeObjectSeparator();
+        }
+        filled.set(depth);
+        writer.writeMemberName(name);
+        writer.writeMemberSeparator();
+        afterName = true;
+        return this;
+    }
+
+    public JsonStreamWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            writer.writeLiteral("null");
+        } else {
+            writer.writeString(value);
+        }
+        return this;
+    }
+
+    public JsonStreamWriter value(long value) throws IOException {
+        beforeValue();
+        writer.writeNumber(Long.toString(value, 10));
+        return this;
+    }
+
+    public JsonStreamWriter value(JsonValue value) throws IOException {
+        beforeValue();
+        value.write(writer);
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (filled.get(depth)) {
+                writer.writeArraySeparator();
+            }
+            filled.set(depth);
+        }
+    }
+
+    /**
+     * Flushes the internal buffer to the wrapped writer but does not flush the wrapped writer.
+     *
+     * @throws IOException if an I/O error occurs in the writer
+     */
+    public void flush() throws IOException {
+        buffer.flush();
+    }
+
+    /**
+     * Flushes the internal buffer. Does not close or flush the wrapped writer.
+     *
+     * @throws IOException if an I/O error occurs in the writer
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.flush();
+    }
+}
@@ -0,0 +1,111 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import me.clutchy.dependenciesgen.shared.Dependency;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Every artifact loaded in this JVM by group:name, shared by all downloaders so the same artifact is never loaded twice.
+// Reads never lock, claiming is one atomic compute so two downloaders can't both end up owning an artifact.
+public class ArtifactRegistry {
+
+    private static final ArtifactRegistry global = new ArtifactRegistry();
+
+    private final Map<String, Artifact> artifacts = new ConcurrentHashMap<>();
+
+    public static ArtifactRegistry getGlobal() {
+        return global;
+    }
+
+    // The caller owns the artifact if nobody had it or the last attempt failed, otherwise it gets the one already claimed to wait on.
+    public Claim claim(Dependency dependency) {
+        Artifact fresh = new Artifact(dependency.getGroup(), dependency.getName(), dependency.getVersion());
+        Artifact artifact = artifacts.compute(getKey(dependency.getGroup(), dependency.getName()), (key, current) -> current == null || current.getState() == State.FAILED ? fresh : current);
+        return new Claim(artifact, artifact == fresh);
+    }
+
+    public Artifact get(String group, String name) {
+        return artifacts.get(getKey(group, name));
+    }
+
+    public Collection<Artifact> getArtifacts() {
+        return new ArrayList<>(artifacts.values());
+    }
+
+    private static String getKey(String group, String name) {
+        return group + ":" + name;
+    }
+
+    public enum State {
+        PENDING, LOADED, FAILED
+    }
+
+    public static class Claim {
+        private final Artifact artifact;
+        private final boolean owner;
+
+        private Claim(Artifact artifact, boolean owner) {
+            this.artifact = artifact;
+            this.owner = owner;
+        }
+
+        public Artifact getArtifact() {
+            return artifact;
+        }
+
+        // The owner has to finish the artifact with loaded or failed so everyone waiting on it moves on.
+        public boolean isOwner() {
+            return owner;
+        }
+    }
+
+    public static class Artifact {
+        private final String group;
+        private final String name;
+        private final String version;
+        private final CompletableFuture<URL> future = new CompletableFuture<>();
+        private final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+
+        private Artifact(String group, String name, String version) {
+            this.group = group;
+            this.name = name;
+            this.version = version;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public State getState() {
+            return state.get();
+        }
+
+        // Completes with the jar once loaded, or exceptionally if the owner failed and the next claim gets to try again.
+        public CompletableFuture<URL> getFuture() {
+            return future;
+        }
+
+        // Only the first of loaded or failed counts, a cancelled download can race the callback.
+        // The state changes before the future so whoever it wakes up already sees it.
+        public void loaded(URL jar) {
+            if (state.compareAndSet(State.PENDING, State.LOADED)) future.complete(jar);
+        }
+
+        public void failed(Throwable throwable) {
+            if (state.compareAndSet(State.PENDING, State.FAILED)) future.completeExceptionally(throwable);
+        }
+    }
+}
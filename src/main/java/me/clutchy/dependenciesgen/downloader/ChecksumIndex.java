@@ -0,0 +1,166 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Remembers the size, modified time and verified digest of every cached jar so unchanged jars don't need to be hashed again.
+// Also keeps the ETag and Last-Modified of the published checksum so it can be revalidated without downloading it.
+public class ChecksumIndex {
+
+    public static final String FILE_NAME = "checksums.json";
+
+    private static final Map<Path, ChecksumIndex> indexes = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean changed = false;
+
+    private ChecksumIndex(Path file) {
+        this.file = file;
+        load();
+    }
+
+    // One index per file in the JVM so downloaders sharing a cache don't overwrite each other.
+    public static ChecksumIndex forFile(Path file) {
+        return indexes.computeIfAbsent(file.toAbsolutePath().normalize(), ChecksumIndex::new);
+    }
+
+    // True when the jar is still exactly the file we verified last time.
+    public boolean isVerified(String key, Path jar, HashAlgorithm algorithm) {
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.algorithm.equals(algorithm.name())) return false;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+            return attributes.size() == entry.size && attributes.lastModifiedTime().toMillis() == entry.modified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Digest we verified last time, or null if we never did with this algorithm.
+    public String getDigest(String key, HashAlgorithm algorithm) {
+        Entry entry = entries.get(key);
+        return entry == null || !entry.algorithm.equals(algorithm.name()) ? null : entry.digest;
+    }
+
+    // What the repository told us about the published checksum last time, or null if we never fetched it with this algorithm.
+    public Validators getValidators(String key, HashAlgorithm algorithm) {
+        Entry entry = entries.get(key);
+        return entry == null || !entry.algorithm.equals(algorithm.name()) ? null : entry.validators;
+    }
+
+    public void put(String key, Path jar, HashAlgorithm algorithm, String digest) throws IOException {
+        put(key, jar, algorithm, digest, null);
+    }
+
+    public void put(String key, Path jar, HashAlgorithm algorithm, String digest, Validators validators) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+        entries.put(key, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), algorithm.name(), digest, validators));
+        changed = true;
+    }
+
+    public void remove(String key) {
+        if (entries.remove(key) != null) changed = true;
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) return;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (JsonObject.Member member : Json.parse(reader).asObject()) {
+                if (!(member.getValue() instanceof JsonObject)) continue;
+                JsonObject json = (JsonObject) member.getValue();
+                Validators validators = null;
+                if (json.get("checksumUrl") != null) {
+                    validators = new Validators(json.getString("checksumUrl", ""), json.getString("etag", null), json.getString("lastModified", null));
+                }
+                entries.put(member.getName(), new Entry(json.getLong("size", -1), json.getLong("modified", -1), json.getString("algorithm", ""), json.getString("digest", ""), validators));
+            }
+        } catch (Exception e) {
+            // Broken index, everything just gets checked again.
+            entries.clear();
+        }
+    }
+
+    public synchronized void save() throws IOException {
+        if (!changed) return;
+        changed = false;
+        JsonObject object = new JsonObject();
+        entries.forEach((key, entry) -> {
+            JsonObject json = new JsonObject().add("size", entry.size).add("modified", entry.modified).add("algorithm", entry.algorithm).add("digest", entry.digest);
+            if (entry.validators != null) {
+                json.add("checksumUrl", entry.validators.url);
+                if (entry.validators.etag != null) json.add("etag", entry.validators.etag);
+                if (entry.validators.lastModified != null) json.add("lastModified", entry.validators.lastModified);
+            }
+            object.add(key, json);
+        });
+        Files.createDirectories(file.getParent());
+        // Write to a temp file and move it so a crash never leaves a half written index
+        Path temp = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                object.writeTo(writer);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Only good for the url they came from, a mirror has its own.
+    public static class Validators {
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+
+        public Validators(String url, String etag, String lastModified) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final String algorithm;
+        private final String digest;
+        private final Validators validators;
+
+        private Entry(long size, long modified, String algorithm, String digest, Validators validators) {
+            this.size = size;
+            this.modified = modified;
+            this.algorithm = algorithm;
+            this.digest = digest;
+            this.validators = validators;
+        }
+    }
+}
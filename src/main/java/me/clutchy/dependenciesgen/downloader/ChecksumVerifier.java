@@ -0,0 +1,71 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Hashes files through a small pool of reusable direct buffers so a jar is never loaded onto the heap.
+public final class ChecksumVerifier {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    private ChecksumVerifier() {
+    }
+
+    public static String hash(Path file, HashAlgorithm algorithm) throws IOException {
+        MessageDigest digest = algorithm.newDigest();
+        update(digest, file, Long.MAX_VALUE);
+        return toHexString(digest.digest());
+    }
+
+    // Feeds up to length bytes from the start of the file into the digest.
+    public static void update(MessageDigest digest, Path file, long length) throws IOException {
+        ByteBuffer buffer = borrowBuffer();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear();
+                if (remaining < buffer.capacity()) buffer.limit((int) remaining);
+                int read = channel.read(buffer);
+                if (read < 0) break;
+                remaining -= read;
+                buffer.flip();
+                digest.update(buffer);
+            }
+        } finally {
+            buffers.offer(buffer);
+        }
+    }
+
+    private static ByteBuffer borrowBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    // Published checksum files are either just the hash or "hash  filename", some tools separate them with a tab.
+    public static String parse(String line) {
+        if (line == null) return null;
+        String hash = line.trim().split("\\s+", 2)[0];
+        return hash.isEmpty() ? null : hash.toLowerCase(Locale.ROOT);
+    }
+
+    // Turns hash bytes to hex string needed for dependency.
+    public static String toHexString(byte[] bytes) {
+        StringBuilder hexString = new StringBuilder(bytes.length * 2);
+        for (byte aByte : bytes) {
+            String hex = Integer.toHexString(0xFF & aByte);
+            if (hex.length() == 1) {
+                hexString.append('0');
+            }
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+}
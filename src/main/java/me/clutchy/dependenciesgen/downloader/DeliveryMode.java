@@ -0,0 +1,9 @@
+package me.clutchy.dependenciesgen.downloader;
+
+// When the download callback is called for each jar.
+public enum DeliveryMode {
+    // As soon as the jar is in the cache, in whatever order the downloads finish.
+    COMPLETION,
+    // Only once the jar and everything it depends on has been called back, so dependencies always come before what needs them.
+    TOPOLOGICAL
+}
@@ -0,0 +1,48 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Thrown, or used to fail the future, when dependencies couldn't be loaded.
+// The first failure is the cause and the rest are suppressed, the result shows what happened to every dependency.
+public class DependencyDownloadException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    // Paths and dependencies don't serialize, a deserialized exception only keeps the message and the causes
+    private final transient DownloadResult result;
+
+    public DependencyDownloadException(String message, Throwable cause) {
+        super(message, cause);
+        this.result = null;
+    }
+
+    public DependencyDownloadException(DownloadResult result) {
+        super("Error loading dependencies: " + getFailures(result).stream().map(artifact -> artifact.getDependency().getName()).collect(Collectors.joining(", ")), getFirstFailure(result));
+        this.result = result;
+        List<DownloadResult.Artifact> failures = getFailures(result);
+        for (int i = 1; i < failures.size(); i++) {
+            addSuppressed(failures.get(i).getFailure());
+        }
+    }
+
+    // Null when it failed before any dependency was looked at, like an unreadable dependencies file.
+    public DownloadResult getResult() {
+        return result;
+    }
+
+    public List<DownloadResult.Artifact> getFailures() {
+        return getFailures(result);
+    }
+
+    private static Throwable getFirstFailure(DownloadResult result) {
+        List<DownloadResult.Artifact> failures = getFailures(result);
+        return failures.isEmpty() ? null : failures.get(0).getFailure();
+    }
+
+    private static List<DownloadResult.Artifact> getFailures(DownloadResult result) {
+        if (result == null) return Collections.emptyList();
+        return result.getArtifacts().stream().filter(artifact -> artifact.getStatus() == DownloadResult.Status.FAILED).collect(Collectors.toList());
+    }
+}
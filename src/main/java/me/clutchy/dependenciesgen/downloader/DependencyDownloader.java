@@ -1,179 +1,936 @@
 package me.clutchy.dependenciesgen.downloader;
 
 import com.eclipsesource.json.Json;
-import com.eclipsesource.json.JsonArray;
-import com.eclipsesource.json.JsonObject;
-import com.eclipsesource.json.JsonValue;
 import me.clutchy.dependenciesgen.shared.Dependency;
+import me.clutchy.dependenciesgen.shared.DependencyManifest;
 
 import java.io.*;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class DependencyDownloader {
 
-    private static final ArrayList<String> loadedArtifacts = new ArrayList<>();
+    private static final String MAVEN_CENTRAL = "https://repo.maven.apache.org/maven2/";
+    private static final long MAX_BACKOFF = 30000;
+    // Shared so every downloader reuses the same connections
+    private static final Transport DEFAULT_TRANSPORT = Transport.detect();
 
     private final ClassLoader classLoader;
     private final Logger logger;
+    private final DownloadScheduler scheduler;
+    private final ChecksumIndex index = ChecksumIndex.forFile(Paths.get("cache", ChecksumIndex.FILE_NAME));
+    private HashAlgorithm checksum = HashAlgorithm.MD5;
+    private boolean verifyAll = Boolean.getBoolean("dependenciesgen.verifyAll");
+    private boolean offlineFirst = Boolean.getBoolean("dependenciesgen.offlineFirst");
+    private boolean revalidate = Boolean.getBoolean("dependenciesgen.revalidate");
+    private int connectTimeout = 15000;
+    private int readTimeout = 60000;
+    private Transport transport = DEFAULT_TRANSPORT;
+    private ArtifactRegistry registry = ArtifactRegistry.getGlobal();
+    private VersionResolver.Strategy versionStrategy = VersionResolver.Strategy.HIGHEST;
+    private DeliveryMode deliveryMode = DeliveryMode.COMPLETION;
+    private FailurePolicy failurePolicy = FailurePolicy.FAIL_FAST;
+    private int retries = 3;
+    private long backoff = 500;
+    private List<String> repositories = Collections.emptyList();
+    private long chunkedMinSize = Long.MAX_VALUE;
+    private int chunks = 1;
 
     public DependencyDownloader(ClassLoader classLoader, Logger logger) {
+        this(classLoader, logger, DownloadScheduler.getDefault());
+    }
+
+    public DependencyDownloader(ClassLoader classLoader, Logger logger, DownloadScheduler scheduler) {
         this.classLoader = classLoader;
         this.logger = logger;
+        this.scheduler = scheduler;
+    }
+
+    // Which published checksum to verify jars against.
+    public DependencyDownloader setChecksum(HashAlgorithm checksum) {
+        this.checksum = checksum;
+        return this;
+    }
+
+    // Hash every cached jar and ask the repository again even when the checksum index says it is unchanged.
+    // Also turned on with -Ddependenciesgen.verifyAll=true.
+    public DependencyDownloader setVerifyAll(boolean verifyAll) {
+        this.verifyAll = verifyAll;
+        return this;
+    }
+
+    // Never contact a repository about jars that are already cached, only missing ones get downloaded.
+    // Also turned on with -Ddependenciesgen.offlineFirst=true.
+    public DependencyDownloader setOfflineFirst(boolean offlineFirst) {
+        this.offlineFirst = offlineFirst;
+        return this;
+    }
+
+    // Ask the repository whether the published checksum changed on every start, even for jars the index says are unchanged.
+    // It is a conditional request so an unchanged checksum costs no body and no hashing. Also turned on with -Ddependenciesgen.revalidate=true.
+    public DependencyDownloader setRevalidate(boolean revalidate) {
+        this.revalidate = revalidate;
+        return this;
+    }
+
+    // How to pick between two versions of the same dependency in the tree, only the picked one is downloaded.
+    public DependencyDownloader setVersionStrategy(VersionResolver.Strategy versionStrategy) {
+        this.versionStrategy = versionStrategy;
+        return this;
+    }
+
+    // TOPOLOGICAL calls back for a jar only after everything it depends on, so each one is usable as soon as it is called back.
+    public DependencyDownloader setDeliveryMode(DeliveryMode deliveryMode) {
+        this.deliveryMode = deliveryMode;
+        return this;
+    }
+
+    // Whether one dependency failing stops the rest, lets them finish first, or is just skipped.
+    public DependencyDownloader setFailurePolicy(FailurePolicy failurePolicy) {
+        this.failurePolicy = failurePolicy;
+        return this;
+    }
+
+    // Which artifacts count as already loaded, the whole JVM shares one unless given another.
+    public DependencyDownloader setRegistry(ArtifactRegistry registry) {
+        this.registry = registry;
+        return this;
+    }
+
+    // What sends the requests, java.net.http when the JVM has it and HttpURLConnection otherwise.
+    public DependencyDownloader setTransport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    // Milliseconds to wait for a repository to accept the connection and between reads, 0 waits forever.
+    public DependencyDownloader setTimeouts(int connectTimeout, int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    // How often a request is retried on a timeout, dropped connection, 429 or 5xx before moving to the next repository.
+    // The wait starts at backoff milliseconds and doubles every attempt with some jitter.
+    public DependencyDownloader setRetries(int retries, long backoff) {
+        this.retries = Math.max(0, retries);
+        this.backoff = Math.max(0, backoff);
+        return this;
+    }
+
+    // Repositories to fall back to, in order, when the one a dependency came from fails. Central is only used for dependencies without a repository.
+    public DependencyDownloader setRepositories(List<String> repositories) {
+        this.repositories = new ArrayList<>(repositories);
+        return this;
+    }
+
+    // Jars of at least minSize bytes are fetched as that many ranges at once, when the repository supports ranges.
+    // Off by default, it only pays off for big jars on a fast link.
+    public DependencyDownloader setChunkedDownloads(long minSize, int chunks) {
+        this.chunkedMinSize = minSize;
+        this.chunks = Math.max(1, chunks);
+        return this;
+    }
+
+    // Prefers the binary manifest when the plugin generated one.
+    public void downloadDependencies(ClassLoader resources, DownloadCallback callback) {
+        await(downloadDependenciesAsync(resources, callback));
     }
 
     public void downloadDependencies(InputStream stream, DownloadCallback callback) {
-        if (stream == null) return;
-        List<Dependency> dependencies = new ArrayList<>();
-        // Read from our json file we gave it.
-        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
-            JsonArray object = Json.parse(reader).asArray();
-            for (JsonValue value: object.values()) {
-                if (value instanceof JsonObject) {
-                    dependencies.add(new Dependency((JsonObject) value));
-                }
-            }
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Error reading dependencies json", e);
-            System.exit(0);
-        }
-        downloadDependencies(dependencies, callback);
+        await(downloadDependenciesAsync(stream, callback));
     }
 
     public void downloadDependencies(List<Dependency> parentDependencies, DownloadCallback callback) {
+        await(downloadDependenciesAsync(parentDependencies, callback));
+    }
+
+    // Throws DependencyDownloadException when the failure policy says the call failed, every failure was already logged where it happened.
+    private void await(CompletableFuture<DownloadResult> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new DependencyDownloadException("Interrupted loading dependencies", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DependencyDownloadException) throw (DependencyDownloadException) e.getCause();
+            throw new DependencyDownloadException("Error loading dependencies", e.getCause());
+        }
+    }
+
+    public CompletableFuture<DownloadResult> downloadDependenciesAsync(ClassLoader resources, DownloadCallback callback) {
+        InputStream stream = resources.getResourceAsStream("META-INF/" + DependencyManifest.FILE_NAME);
+        if (stream == null) stream = resources.getResourceAsStream("META-INF/dependencies.json");
+        return downloadDependenciesAsync(stream, callback);
+    }
+
+    public CompletableFuture<DownloadResult> downloadDependenciesAsync(InputStream stream, DownloadCallback callback) {
+        if (stream == null) return CompletableFuture.completedFuture(new DownloadResult(Collections.emptyList(), 0));
+        List<Dependency> dependencies;
+        // Read from our json or binary file we gave it.
+        try (BufferedInputStream input = new BufferedInputStream(stream)) {
+            dependencies = readDependencies(input);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Error reading dependencies file", e);
+            CompletableFuture<DownloadResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new DependencyDownloadException("Error reading dependencies file", e));
+            return failed;
+        }
+        return downloadDependenciesAsync(dependencies, callback);
+    }
+
+    private List<Dependency> readDependencies(BufferedInputStream input) throws IOException {
+        // Binary manifests start with a magic header, anything else is json
+        byte[] header = new byte[DependencyManifest.HEADER_LENGTH];
+        input.mark(header.length);
+        int read = 0;
+        while (read < header.length) {
+            int count = input.read(header, read, header.length - read);
+            if (count < 0) break;
+            read += count;
+        }
+        input.reset();
+        if (DependencyManifest.isManifest(header)) return DependencyManifest.read(input);
+        return Dependency.fromJSON(Json.parse(new InputStreamReader(input, StandardCharsets.UTF_8)));
+    }
+
+    // Completes once every dependency was called back or failed, with a DependencyDownloadException unless the failure policy is SKIP.
+    // Cancelling it stops the downloads still running, their part files are kept to resume next time.
+    public CompletableFuture<DownloadResult> downloadDependenciesAsync(List<Dependency> parentDependencies, DownloadCallback callback) {
         logger.info("Loading dependencies");
-        List<Dependency> dependencies = new ArrayList<>();
-        // Already loaded list
-        List<String> loadedDependenciesIds = new ArrayList<>();
-        // Get all dependencies as one list
-        parentDependencies.forEach(parentDependency -> dependencies.addAll(getDependenciesFromParent(parentDependency)));
+        long start = System.nanoTime();
+        // Get all dependencies as one list with one version of each, before anything touches the network
+        List<Dependency> dependencies = VersionResolver.resolve(parentDependencies, versionStrategy, logger);
         // Sort all dependencies
         Collections.sort(dependencies);
-        // Lock to dependencies so we don't continue until we are out of dependencies
-        CountDownLatch latch = new CountDownLatch(dependencies.size());
+        // Start every download first, delivery only decides when each callback happens
+        Batch batch = new Batch(callback);
         for (Dependency dependency : dependencies) {
-            // Make sure we don't have this artifact loaded.
-            if (loadedArtifacts.contains(dependency.getGroup() + ":" + dependency.getName())) {
-                latch.countDown();
-                continue;
-            }
-            // Add to global artifacts so we don't get duplicates.
-            // Possibly do version checking in the future and unload older?
-            loadedArtifacts.add(dependency.getGroup() + ":" + dependency.getName());
-            new Thread(() -> {
-                File cacheDependencyPath = new File("cache", getPath(dependency));
+            batch.downloads.put(getKey(dependency), download(dependency));
+        }
+        // Noticed as soon as the download fails, even when topological delivery would only get to it later
+        batch.downloads.values().forEach(download -> download.thenAccept(jar -> {
+            if (jar.result.getStatus() == DownloadResult.Status.FAILED) batch.failed();
+        }));
+        // Never completes exceptionally, a failure or cancel is just the status of that artifact
+        Map<String, CompletableFuture<DownloadResult.Artifact>> delivered = new HashMap<>();
+        if (deliveryMode == DeliveryMode.TOPOLOGICAL) {
+            Map<String, Dependency> resolved = new HashMap<>();
+            dependencies.forEach(dependency -> resolved.put(getKey(dependency), dependency));
+            dependencies.forEach(dependency -> deliverAfterDependencies(dependency, resolved, delivered, new HashSet<>(), batch));
+        } else {
+            dependencies.forEach(dependency -> delivered.put(getKey(dependency), batch.downloads.get(getKey(dependency)).handle((jar, error) -> deliver(dependency, jar, error, batch, true))));
+        }
+        batch.result.whenComplete((done, error) -> {
+            if (batch.result.isCancelled()) batch.stop();
+        });
+        // Everything has settled by now, failed or not, so the index only holds jars that really are in the cache
+        CompletableFuture.allOf(delivered.values().toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            List<DownloadResult.Artifact> artifacts = new ArrayList<>();
+            dependencies.forEach(dependency -> artifacts.add(delivered.get(getKey(dependency)).join()));
+            DownloadResult result = new DownloadResult(artifacts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            try {
+                index.save();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Error saving checksum index", e);
+            }
+            // Log all our dependency
+            List<String> loadedIds = new ArrayList<>();
+            artifacts.stream().filter(artifact -> artifact.getStatus() == DownloadResult.Status.DOWNLOADED || artifact.getStatus() == DownloadResult.Status.CACHED)
+                    .forEach(artifact -> loadedIds.add(artifact.getDependency().getName()));
+            if (!loadedIds.isEmpty()) {
+                Collections.sort(loadedIds);
+                String loadedDependencies = loadedIds.toString().substring(1).replaceFirst("]", "");
+                logger.info("Loaded dependencies: " + loadedDependencies);
+            }
+            boolean failed = artifacts.stream().anyMatch(artifact -> artifact.getStatus() == DownloadResult.Status.FAILED);
+            if (failed && failurePolicy != FailurePolicy.SKIP) {
+                batch.result.completeExceptionally(new DependencyDownloadException(result));
+            } else {
+                batch.result.complete(result);
+            }
+        });
+        return batch.result;
+    }
+
+    // Downloads the dependency unless another download already claimed it, in which case we only wait for that one.
+    // Waiting never blocks a download thread. Only completes exceptionally when cancelled, a failed download is a FAILED result.
+    private CompletableFuture<LoadedJar> download(Dependency dependency) {
+        ArtifactRegistry.Claim claim = registry.claim(dependency);
+        ArtifactRegistry.Artifact artifact = claim.getArtifact();
+        if (!claim.isOwner()) {
+            if (!artifact.getVersion().equals(dependency.getVersion())) {
+                logger.warning("Dependency " + dependency.getName() + " " + dependency.getVersion() + " wanted but " + artifact.getVersion() + " is already loaded");
+            }
+            LoadedJar elsewhere = new LoadedJar(new DownloadResult.Artifact(dependency, DownloadResult.Status.LOADED_ELSEWHERE, null, 0, 0, null), artifact, null);
+            // If that download fails we get to try it ourselves
+            return artifact.getFuture().handle((url, error) -> error == null ? CompletableFuture.completedFuture(elsewhere) : download(dependency)).thenCompose(future -> future);
+        }
+        CompletableFuture<LoadedJar> future = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = scheduler.submit(() -> {
+                if (future.isDone()) return;
+                long start = System.nanoTime();
+                Transfer transfer = new Transfer();
                 try {
-                    // Create default directories
-                    Files.createDirectories(cacheDependencyPath.toPath());
-                    File jar = cacheDependencyPath.toPath().resolve(getFileName(dependency, false)).toFile();
-                    // If the file does not exist then try to download it.
-                    // If it does then check to make sure it is valid based off MD5.
-                    if (!jar.exists()) {
-                        downloadFile(dependency, jar, false);
-                    } else {
-                        logger.info("Checking dependency: " + dependency.getName());
-                        // Read the dependencies MD5
-                        byte[] bytes = Files.readAllBytes(jar.toPath());
-                        byte[] hash = MessageDigest.getInstance("MD5").digest(bytes);
-                        String md5 = toHexString(hash);
-                        // Make sure our file MD5 is still valid?
-                        if (!md5.trim().isEmpty()) {
-                            // Read the dependency md5 from url
-                            try (BufferedReader readerUrl = new BufferedReader(new InputStreamReader(getConnection(dependency, true), StandardCharsets.UTF_8))) {
-                                String urlMd5 = readerUrl.readLine();
-                                if (urlMd5 != null && !urlMd5.equalsIgnoreCase(md5)) {
-                                    downloadFile(dependency, jar, true);
-                                }
-                            } catch (Exception ignored) {
-                                // We don't have a url for the md5 so just continue on sadly.
-                            }
-                        }
-                    }
-                    // Add to callback and let the user take care of it.
-                    callback.callback(jar.toURI().toURL());
-                    // Add to local list of dependencies
-                    loadedDependenciesIds.add(dependency.getName());
+                    File jar = loadJar(dependency, transfer);
+                    DownloadResult.Status status = transfer.downloaded ? DownloadResult.Status.DOWNLOADED : DownloadResult.Status.CACHED;
+                    long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    future.complete(new LoadedJar(new DownloadResult.Artifact(dependency, status, jar.toPath(), transfer.bytes.sum(), duration, null), artifact, jar.toURI().toURL()));
                 } catch (Exception e) {
-                    latch.countDown();
-                    // We encountered a error with needed dependencies so we can't proceed, log and shutdown.
-                    logger.log(Level.SEVERE, "Error loading dependency: " + dependency.getName(), e);
-                    // Remove from loaded
-                    loadedArtifacts.remove(dependency.getGroup() + ":" + dependency.getName());
-                    // Shutdown
-                    System.exit(0);
-                } finally {
-                    latch.countDown();
+                    // Interrupted by a cancel, not an error of its own
+                    if (future.isCancelled()) return;
+                    fail(dependency, artifact, e);
+                    long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    future.complete(new LoadedJar(new DownloadResult.Artifact(dependency, DownloadResult.Status.FAILED, null, transfer.bytes.sum(), duration, e), artifact, null));
                 }
-            }).start();
+            });
+        } catch (RejectedExecutionException e) {
+            // The scheduler was shut down, give the claim back or everyone waiting on it waits forever
+            fail(dependency, artifact, e);
+            future.complete(new LoadedJar(new DownloadResult.Artifact(dependency, DownloadResult.Status.FAILED, null, 0, 0, e), artifact, null));
+            return future;
+        }
+        future.whenComplete((jar, error) -> {
+            if (!future.isCancelled()) return;
+            task.cancel(true);
+            artifact.failed(error);
+        });
+        return future;
+    }
+
+    // The callback for a dependency waits on its own download and the callbacks of everything it depends on.
+    private CompletableFuture<DownloadResult.Artifact> deliverAfterDependencies(Dependency dependency, Map<String, Dependency> resolved, Map<String, CompletableFuture<DownloadResult.Artifact>> delivered,
+                                                                             Set<String> visiting, Batch batch) {
+        String key = getKey(dependency);
+        CompletableFuture<DownloadResult.Artifact> existing = delivered.get(key);
+        if (existing != null) return existing;
+        visiting.add(key);
+        List<CompletableFuture<DownloadResult.Artifact>> waitingOn = new ArrayList<>();
+        for (Dependency child : dependency.getDependencies()) {
+            // Children point at the version that won, a cycle just drops the edge that closes it
+            Dependency resolvedChild = resolved.get(getKey(child));
+            if (resolvedChild == null || visiting.contains(getKey(child))) continue;
+            waitingOn.add(deliverAfterDependencies(resolvedChild, resolved, delivered, visiting, batch));
+        }
+        visiting.remove(key);
+        CompletableFuture<LoadedJar> download = batch.downloads.get(key);
+        CompletableFuture<DownloadResult.Artifact> future = CompletableFuture.allOf(waitingOn.toArray(new CompletableFuture<?>[0]))
+                .thenCompose(ignored -> download.handle((jar, error) -> deliver(dependency, jar, error, batch, waitingOn.stream().allMatch(child -> isLoaded(child.join())))));
+        delivered.put(key, future);
+        return future;
+    }
+
+    // Loaded by us or someone else, so whatever depends on it can be used.
+    private static boolean isLoaded(DownloadResult.Artifact artifact) {
+        DownloadResult.Status status = artifact.getStatus();
+        return status == DownloadResult.Status.DOWNLOADED || status == DownloadResult.Status.CACHED || status == DownloadResult.Status.LOADED_ELSEWHERE;
+    }
+
+    // Without its dependencies loaded a jar isn't called back either, whatever the failure policy.
+    private DownloadResult.Artifact deliver(Dependency dependency, LoadedJar jar, Throwable error, Batch batch, boolean dependenciesLoaded) {
+        if (error != null) return new DownloadResult.Artifact(dependency, DownloadResult.Status.CANCELLED, null, 0, 0, null);
+        DownloadResult.Artifact result = jar.result;
+        if (result.getStatus() == DownloadResult.Status.LOADED_ELSEWHERE || result.getStatus() == DownloadResult.Status.FAILED) return result;
+        if (!dependenciesLoaded && !batch.stopped) logger.warning("Not loading dependency " + dependency.getName() + ", something it depends on was not loaded");
+        // Downloaded fine but it can't be used, the jar stays in the cache and the next claim gets to load it
+        if (batch.stopped || !dependenciesLoaded) {
+            jar.artifact.failed(new CancellationException("Dependency " + dependency.getName() + " was not loaded"));
+            return new DownloadResult.Artifact(dependency, DownloadResult.Status.CANCELLED, result.getPath(), result.getBytesTransferred(), result.getDuration(), null);
         }
         try {
-            latch.await();
-        } catch (InterruptedException e) {
-            logger.severe("Error loading dependency: ");
-            System.exit(0);
+            // Add to callback and let the user take care of it.
+            batch.callback.callback(jar.url);
+            jar.artifact.loaded(jar.url);
+            return result;
+        } catch (Exception e) {
+            fail(dependency, jar.artifact, e);
+            batch.failed();
+            return new DownloadResult.Artifact(dependency, DownloadResult.Status.FAILED, result.getPath(), result.getBytesTransferred(), result.getDuration(), e);
         }
-        // Log all our dependency
-        if (!loadedDependenciesIds.isEmpty()) {
-            Collections.sort(loadedDependenciesIds);
-            String loadedDependencies = loadedDependenciesIds.toString().substring(1).replaceFirst("]", "");
-            logger.info("Loaded dependencies: " + loadedDependencies);
+    }
+
+    private void fail(Dependency dependency, ArtifactRegistry.Artifact artifact, Exception e) {
+        if (failurePolicy == FailurePolicy.SKIP) {
+            logger.log(Level.WARNING, "Skipping dependency: " + dependency.getName(), e);
+        } else {
+            logger.log(Level.SEVERE, "Error loading dependency: " + dependency.getName(), e);
         }
+        // Let the next claim have another go
+        artifact.failed(e);
     }
 
-    // Turns MD5 bytes to hex string needed for dependency.
-    private String toHexString(byte[] bytes) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte aByte : bytes) {
-            String hex = Integer.toHexString(0xFF & aByte);
-            if (hex.length() == 1) {
-                hexString.append('0');
+    private static String getKey(Dependency dependency) {
+        return dependency.getGroup() + ":" + dependency.getName();
+    }
+
+    // Makes sure the cached jar is the published one, downloading it if it is missing or doesn't match.
+    private File loadJar(Dependency dependency, Transfer transfer) throws IOException {
+        File cacheDependencyPath = new File("cache", getPath(dependency));
+        // Create default directories
+        Files.createDirectories(cacheDependencyPath.toPath());
+        File jar = cacheDependencyPath.toPath().resolve(getFileName(dependency, false)).toFile();
+        String key = getPath(dependency) + jar.getName();
+        // If the file does not exist then try to download it.
+        if (!jar.exists()) {
+            PublishedChecksum published = getPublishedChecksum(dependency, null, transfer);
+            record(key, jar, published.digest, downloadFile(dependency, jar, published.digest, false, transfer), published.validators);
+            return jar;
+        }
+        boolean unchanged = index.isVerified(key, jar.toPath(), checksum);
+        String recorded = index.getDigest(key, checksum);
+        ChecksumIndex.Validators validators = index.getValidators(key, checksum);
+        // A jar the index never verified, like one an older version copied in place, takes the normal path below.
+        if (offlineFirst && recorded != null) {
+            if (unchanged && !verifyAll) return jar;
+            // Offline first only compares against what we verified before, the repository is never asked.
+            logger.info("Checking dependency: " + dependency.getName());
+            String hash = ChecksumVerifier.hash(jar.toPath(), checksum);
+            if (!recorded.equalsIgnoreCase(hash)) {
+                PublishedChecksum published = getPublishedChecksum(dependency, null, transfer);
+                record(key, jar, published.digest, downloadFile(dependency, jar, published.digest, true, transfer), published.validators);
+            } else {
+                index.put(key, jar.toPath(), checksum, hash, validators);
             }
-            hexString.append(hex);
+            return jar;
+        }
+        // Same file we verified last time so there is nothing to check.
+        if (unchanged && !verifyAll && !revalidate) return jar;
+        // Asked conditionally, a 304 means the published checksum is still the one the jar matched last time.
+        PublishedChecksum published = getPublishedChecksum(dependency, recorded == null ? null : validators, transfer);
+        String expected = published.notModified ? recorded : published.digest;
+        if (unchanged && !verifyAll && (expected == null || expected.equalsIgnoreCase(recorded))) {
+            if (!published.notModified && published.validators != null) index.put(key, jar.toPath(), checksum, recorded, published.validators);
+            return jar;
+        }
+        logger.info("Checking dependency: " + dependency.getName());
+        // Hash the jar straight from disk
+        String hash = ChecksumVerifier.hash(jar.toPath(), checksum);
+        // We don't have a checksum to compare to so just continue on sadly.
+        if (expected != null && !expected.equalsIgnoreCase(hash)) {
+            hash = downloadFile(dependency, jar, expected, true, transfer);
+        }
+        record(key, jar, expected, hash, published.validators);
+        return jar;
+    }
+
+    // Only a digest that matched a published checksum counts as verified. Without one the jar is checked again on the next start.
+    private void record(String key, File jar, String expected, String hash, ChecksumIndex.Validators validators) throws IOException {
+        if (expected == null) {
+            index.remove(key);
+        } else {
+            index.put(key, jar.toPath(), checksum, hash, validators);
         }
-        return hexString.toString();
     }
 
-    private URL getUrl(Dependency dependency, boolean hash) throws MalformedURLException {
+    // The dependency's own repository, or Maven Central when it has none, then only the fallbacks we were given.
+    // A dependency from a private repository is never looked up on Central.
+    private List<URL> getUrls(Dependency dependency, boolean hash) throws MalformedURLException {
+        Set<String> repos = new LinkedHashSet<>();
         String repo = dependency.getRepo();
-        if (repo == null || repo.trim().isEmpty()) repo = "https://repo.maven.apache.org/maven2/";
-        if (!repo.endsWith("/")) repo += "/";
-        return new URL(repo + getPath(dependency) + getFileName(dependency, hash));
+        repos.add(repo == null || repo.trim().isEmpty() ? MAVEN_CENTRAL : repo);
+        repos.addAll(repositories);
+        List<URL> urls = new ArrayList<>();
+        for (String base : repos) {
+            if (base == null || base.trim().isEmpty()) continue;
+            if (!base.endsWith("/")) base += "/";
+            URL url = new URL(base + getPath(dependency) + getFileName(dependency, hash));
+            if (!urls.contains(url)) urls.add(url);
+        }
+        return urls;
     }
 
     private String getFileName(Dependency dependency, boolean hash) {
-        return dependency.getName() + "-" + dependency.getVersion() + ".jar" + (hash ? ".md5" : "");
+        return dependency.getName() + "-" + dependency.getVersion() + ".jar" + (hash ? "." + checksum.getExtension() : "");
     }
 
     private String getPath(Dependency dependency) {
         return dependency.getGroup().replaceAll("\\.", "/") + "/" + dependency.getName() + "/" + dependency.getVersion() + "/";
     }
 
-    private void downloadFile(Dependency dependency, File location, boolean reDownload) throws IOException {
+    // Hashes while the bytes go to a part file and only moves it into the cache once it matches the published checksum.
+    // A part left over from an interrupted download is hashed and continued with a range request when the server allows it.
+    private String downloadFile(Dependency dependency, File location, String expected, boolean reDownload, Transfer transfer) throws IOException {
+        transfer.downloaded = true;
         logger.info((reDownload ? "Red" : "D") + "ownloading dependency" + ": " + dependency.getName());
-        // Download and copy file. Catch error here in the future?
-        try (InputStream inputStream = getConnection(dependency, false)) {
-            Files.copy(inputStream, location.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Path target = location.toPath();
+        PartFile part = new PartFile(target);
+        while (true) {
+            PartDownload download = new PartDownload(dependency, part);
+            // A part we can resume beats starting over in chunks
+            String hash = null;
+            if (chunks > 1 && !part.canResume()) hash = downloadChunked(dependency, part, transfer);
+            if (hash == null) hash = request(dependency, false, download, transfer);
+            if (expected != null && !expected.equalsIgnoreCase(hash)) {
+                // Never keep bytes that don't add up, the next attempt starts from zero
+                part.delete();
+                if (download.resumed) {
+                    logger.warning("Resumed download of " + dependency.getName() + " does not match its " + checksum.getDigestName() + ", downloading it again");
+                    continue;
+                }
+                throw new IOException("Downloaded dependency " + dependency.getName() + " does not match its " + checksum.getDigestName() + ", expected " + expected + " but got " + hash);
+            }
+            if (expected == null) {
+                logger.warning("No " + checksum.getDigestName() + " published for dependency: " + dependency.getName() + ", using it unverified");
+            }
+            part.complete(target);
+            return hash;
+        }
+    }
+
+    // Splits the jar into ranges that download in parallel straight to their place in a preallocated part file.
+    // Returns null when the jar is too small or the repository doesn't do ranges, so it gets streamed normally instead.
+    private String downloadChunked(Dependency dependency, PartFile part, Transfer transfer) throws IOException {
+        ChunkedFile file;
+        try {
+            file = request(dependency, false, new Exchange<ChunkedFile>() {
+                @Override
+                public void prepare(Transport.Request request) {
+                    request.setMethod("HEAD");
+                }
+
+                @Override
+                public ChunkedFile read(Transport.Response response) {
+                    String etag = response.getHeader("ETag");
+                    boolean ranges = response.getStatus() / 100 == 2 && "bytes".equalsIgnoreCase(response.getHeader("Accept-Ranges"));
+                    return new ChunkedFile(response.getUrl(), response.getContentLength(), ranges, etag != null && !etag.startsWith("W/") ? etag : response.getHeader("Last-Modified"));
+                }
+            }, transfer);
+        } catch (IOException e) {
+            if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) throw e;
+            // Some repositories don't answer HEAD at all, a plain GET might still work
+            logger.info("Repository did not answer HEAD for dependency " + dependency.getName() + ", downloading it in one piece: " + e.getMessage());
+            return null;
+        }
+        if (!file.ranges || file.length < Math.max(chunkedMinSize, chunks)) return null;
+        logger.info("Downloading dependency " + dependency.getName() + " in " + chunks + " chunks");
+        part.delete();
+        List<Future<?>> futures = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(part.getPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            // Preallocate so every chunk can write at its own position
+            channel.write(ByteBuffer.wrap(new byte[1]), file.length - 1);
+            long size = (file.length + chunks - 1) / chunks;
+            for (long start = 0; start < file.length; start += size) {
+                long end = Math.min(file.length, start + size) - 1;
+                long chunkStart = start;
+                futures.add(scheduler.getChunkExecutor().submit(() -> request(Collections.singletonList(file.url), new ChunkDownload(file, channel, chunkStart, end), transfer)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            part.delete();
+            if (e.getCause() instanceof RangeException) {
+                logger.info("Repository ignored the range for dependency " + dependency.getName() + ", downloading it in one piece");
+                return null;
+            }
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            part.delete();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted downloading " + dependency.getName());
         }
+        // The chunks were never hashed on the way in so do the whole file now
+        return ChecksumVerifier.hash(part.getPath(), checksum);
     }
 
-    // Default connection process for dependencies with user-agent to make sure nothing goes wrong.
-    private InputStream getConnection(Dependency dependency, boolean MD5) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) getUrl(dependency, MD5).openConnection();
-        connection.addRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.11 (KHTML, like Gecko) Chrome/23.0.1271.95 Safari/537.11");
-        connection.setRequestMethod("GET");
-        connection.connect();
-        return connection.getInputStream();
+    // Checksum the repository publishes for the jar, the digest is null if it doesn't have one.
+    // With validators from last time the request is conditional and an unchanged checksum comes back as not modified.
+    private PublishedChecksum getPublishedChecksum(Dependency dependency, ChecksumIndex.Validators previous, Transfer transfer) {
+        try {
+            return request(dependency, true, new Exchange<PublishedChecksum>() {
+                @Override
+                public void prepare(Transport.Request request) {
+                    if (previous == null || !previous.getUrl().equals(request.getUrl().toString())) return;
+                    if (previous.getETag() != null) request.setHeader("If-None-Match", previous.getETag());
+                    if (previous.getLastModified() != null) request.setHeader("If-Modified-Since", previous.getLastModified());
+                }
+
+                @Override
+                public PublishedChecksum read(Transport.Response response) throws IOException {
+                    String url = response.getUrl().toString();
+                    String etag = response.getHeader("ETag");
+                    String lastModified = response.getHeader("Last-Modified");
+                    if (response.getStatus() == 304) {
+                        return new PublishedChecksum(null, true, new ChecksumIndex.Validators(url, etag != null ? etag : previous.getETag(), lastModified != null ? lastModified : previous.getLastModified()));
+                    }
+                    String digest = ChecksumVerifier.parse(new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8)).readLine());
+                    return new PublishedChecksum(digest, false, etag == null && lastModified == null ? null : new ChecksumIndex.Validators(url, etag, lastModified));
+                }
+            }, transfer);
+        } catch (IOException e) {
+            return new PublishedChecksum(null, false, null);
+        }
+    }
+
+    // Runs the exchange against each repository in turn, retrying the ones that fail in a way that might go away.
+    // A 404 or other client error moves on to the next repository straight away.
+    private <T> T request(Dependency dependency, boolean hash, Exchange<T> exchange, Transfer transfer) throws IOException {
+        List<URL> urls = getUrls(dependency, hash);
+        if (urls.isEmpty()) throw new FileNotFoundException("No repository for dependency " + dependency.getName());
+        return request(urls, exchange, transfer);
+    }
+
+    private <T> T request(List<URL> urls, Exchange<T> exchange, Transfer transfer) throws IOException {
+        IOException failure = null;
+        for (URL url : urls) {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    return getConnection(url, exchange, transfer);
+                } catch (IOException e) {
+                    if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) throw e;
+                    if (failure != null && failure != e) e.addSuppressed(failure);
+                    failure = e;
+                    if (attempt >= retries || !isRetryable(e)) break;
+                    long delay = getBackoff(attempt, e);
+                    logger.warning("Retrying " + url + " in " + delay + "ms: " + e.getMessage());
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted retrying " + url);
+                    }
+                }
+            }
+        }
+        throw failure;
+    }
+
+    private boolean isRetryable(IOException e) {
+        if (e instanceof RangeException) return false;
+        if (e instanceof ResponseException) {
+            int status = ((ResponseException) e).status;
+            return status == 429 || status >= 500;
+        }
+        // Timeouts, refused or dropped connections
+        return !(e instanceof FileNotFoundException);
+    }
+
+    // Doubles every attempt, randomly somewhere in the upper half so many threads don't retry in lockstep.
+    // Honours Retry-After when the repository sends one.
+    private long getBackoff(int attempt, IOException e) {
+        long delay = Math.min(MAX_BACKOFF, backoff << Math.min(attempt, 16));
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        if (e instanceof ResponseException && ((ResponseException) e).retryAfter > 0) {
+            delay = Math.max(delay, Math.min(MAX_BACKOFF, ((ResponseException) e).retryAfter * 1000));
+        }
+        return delay;
+    }
+
+    // Holds a host permit for the whole exchange so the connection count stays within the scheduler's limit.
+    @SuppressWarnings("try")
+    private <T> T getConnection(URL url, Exchange<T> exchange, Transfer transfer) throws IOException {
+        try (DownloadScheduler.Permit ignored = acquire(url)) {
+            Transport.Request request = new Transport.Request(url).setTimeouts(connectTimeout, readTimeout);
+            request.setHeader("User-Agent", "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.11 (KHTML, like Gecko) Chrome/23.0.1271.95 Safari/537.11");
+            exchange.prepare(request);
+            try (Transport.Response response = transport.send(request)) {
+                int status = response.getStatus();
+                // A range we asked for that no longer fits is for the exchange to sort out
+                if (status >= 400 && !(status == 416 && request.getHeader("Range") != null)) {
+                    throw new ResponseException(url, status, getRetryAfter(response));
+                }
+                return exchange.read(new CountedResponse(response, transfer));
+            }
+        }
+    }
+
+    // Seconds, only the delay form. -1 when missing.
+    private long getRetryAfter(Transport.Response response) {
+        String retryAfter = response.getHeader("Retry-After");
+        if (retryAfter == null) return -1;
+        try {
+            return Long.parseLong(retryAfter.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private DownloadScheduler.Permit acquire(URL url) throws IOException {
+        try {
+            return scheduler.acquire(url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + url.getHost());
+        }
+    }
+
+    private interface Exchange<T> {
+        // Add request headers before it is sent.
+        default void prepare(Transport.Request request) throws IOException {
+        }
+
+        T read(Transport.Response response) throws IOException;
+    }
+
+    // Streams the jar into its part file, appending when the server honours our range and starting over when it doesn't.
+    private class PartDownload implements Exchange<String> {
+        private final Dependency dependency;
+        private final PartFile part;
+        private long offset;
+        private boolean resumed;
+
+        private PartDownload(Dependency dependency, PartFile part) {
+            this.dependency = dependency;
+            this.part = part;
+        }
+
+        @Override
+        public void prepare(Transport.Request request) throws IOException {
+            offset = part.getResumeOffset(request.getUrl().toString());
+            if (offset > 0) {
+                request.setHeader("Range", "bytes=" + offset + "-");
+                request.setHeader("If-Range", part.getValidator());
+            }
+        }
+
+        @Override
+        public String read(Transport.Response response) throws IOException {
+            int status = response.getStatus();
+            if (status == 416 || status == 206 && PartFile.getRangeStart(response.getHeader("Content-Range")) != offset) {
+                part.delete();
+                throw new IOException("Partial download of " + dependency.getName() + " can't be resumed, starting over");
+            }
+            MessageDigest digest = checksum.newDigest();
+            boolean append = status == 206;
+            if (append) {
+                logger.info("Resuming dependency " + dependency.getName() + " from " + offset + " bytes");
+                ChecksumVerifier.update(digest, part.getPath(), offset);
+                resumed = true;
+            } else {
+                part.start(response.getUrl().toString(), response.getHeader("ETag"), response.getHeader("Last-Modified"));
+            }
+            try (OutputStream out = append ? Files.newOutputStream(part.getPath(), StandardOpenOption.APPEND) : Files.newOutputStream(part.getPath())) {
+                InputStream stream = response.getBody();
+                byte[] buffer = new byte[8192];
+                long total = 0;
+                int read;
+                while ((read = stream.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    total += read;
+                }
+                // A dropped connection can look like a normal end of stream, what we have so far is kept for the retry
+                long length = response.getContentLength();
+                if (length >= 0 && total != length) {
+                    throw new IOException("Connection closed after " + total + " of " + length + " bytes of dependency " + dependency.getName());
+                }
+            }
+            return ChecksumVerifier.toHexString(digest.digest());
+        }
+    }
+
+    // One downloadDependencies call, stopped by a cancel or, with FAIL_FAST, by the first failure.
+    private class Batch {
+        private final DownloadCallback callback;
+        private final Map<String, CompletableFuture<LoadedJar>> downloads = new LinkedHashMap<>();
+        private final CompletableFuture<DownloadResult> result = new CompletableFuture<>();
+        private volatile boolean stopped;
+
+        private Batch(DownloadCallback callback) {
+            this.callback = callback;
+        }
+
+        private void failed() {
+            if (failurePolicy == FailurePolicy.FAIL_FAST) stop();
+        }
+
+        private void stop() {
+            stopped = true;
+            downloads.values().forEach(download -> download.cancel(true));
+        }
+    }
+
+    private static class LoadedJar {
+        private final DownloadResult.Artifact result;
+        private final ArtifactRegistry.Artifact artifact;
+        private final URL url;
+
+        private LoadedJar(DownloadResult.Artifact result, ArtifactRegistry.Artifact artifact, URL url) {
+            this.result = result;
+            this.artifact = artifact;
+            this.url = url;
+        }
+    }
+
+    // What one dependency cost, chunks add to it from their own threads.
+    private static class Transfer {
+        private final LongAdder bytes = new LongAdder();
+        private volatile boolean downloaded;
+    }
+
+    // Counts every body byte an exchange reads into the transfer.
+    private static class CountedResponse implements Transport.Response {
+        private final Transport.Response response;
+        private final Transfer transfer;
+
+        private CountedResponse(Transport.Response response, Transfer transfer) {
+            this.response = response;
+            this.transfer = transfer;
+        }
+
+        @Override
+        public URL getUrl() {
+            return response.getUrl();
+        }
+
+        @Override
+        public int getStatus() {
+            return response.getStatus();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return response.getHeader(name);
+        }
+
+        @Override
+        public long getContentLength() {
+            return response.getContentLength();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return new FilterInputStream(response.getBody()) {
+                @Override
+                public int read() throws IOException {
+                    int read = super.read();
+                    if (read >= 0) transfer.bytes.increment();
+                    return read;
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) throws IOException {
+                    int read = super.read(bytes, offset, length);
+                    if (read > 0) transfer.bytes.add(read);
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            response.close();
+        }
+    }
+
+    private static class ChunkedFile {
+        private final URL url;
+        private final long length;
+        private final boolean ranges;
+        private final String validator;
+
+        private ChunkedFile(URL url, long length, boolean ranges, String validator) {
+            this.url = url;
+            this.length = length;
+            this.ranges = ranges;
+            this.validator = validator;
+        }
+    }
+
+    // Writes one range of a chunked download, anything but the exact range we asked for means ranges can't be used.
+    private static class ChunkDownload implements Exchange<Void> {
+        private final ChunkedFile file;
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        private ChunkDownload(ChunkedFile file, FileChannel channel, long start, long end) {
+            this.file = file;
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public void prepare(Transport.Request request) {
+            request.setHeader("Range", "bytes=" + start + "-" + end);
+            if (file.validator != null) request.setHeader("If-Range", file.validator);
+        }
+
+        @Override
+        public Void read(Transport.Response response) throws IOException {
+            if (response.getStatus() != 206 || PartFile.getRangeStart(response.getHeader("Content-Range")) != start) {
+                throw new RangeException("Expected bytes " + start + "-" + end + " of " + file.url + " but got " + response.getStatus());
+            }
+            InputStream stream = response.getBody();
+            byte[] buffer = new byte[65536];
+            long position = start;
+            int read;
+            while (position <= end && (read = stream.read(buffer, 0, (int) Math.min(buffer.length, end - position + 1))) >= 0) {
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    position += channel.write(bytes, position);
+                }
+            }
+            if (position != end + 1) throw new IOException("Connection closed after " + (position - start) + " of " + (end - start + 1) + " bytes of " + file.url);
+            return null;
+        }
+    }
+
+    private static class RangeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private RangeException(String message) {
+            super(message);
+        }
+    }
+
+    private static class PublishedChecksum {
+        private final String digest;
+        private final boolean notModified;
+        private final ChecksumIndex.Validators validators;
+
+        private PublishedChecksum(String digest, boolean notModified, ChecksumIndex.Validators validators) {
+            this.digest = digest;
+            this.notModified = notModified;
+            this.validators = validators;
+        }
+    }
+
+    private static class ResponseException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+        private final long retryAfter;
+
+        private ResponseException(URL url, int status, long retryAfter) {
+            super("Server returned HTTP response code: " + status + " for URL: " + url);
+            this.status = status;
+            this.retryAfter = retryAfter;
+        }
     }
 
     public List<Dependency> getDependenciesFromParent(Dependency dependency) {
@@ -0,0 +1,91 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import me.clutchy.dependenciesgen.shared.Dependency;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+// What one downloadDependencies call did for every dependency it was given.
+public class DownloadResult {
+
+    private final List<Artifact> artifacts;
+    private final long duration;
+
+    public DownloadResult(List<Artifact> artifacts, long duration) {
+        this.artifacts = Collections.unmodifiableList(artifacts);
+        this.duration = duration;
+    }
+
+    public List<Artifact> getArtifacts() {
+        return artifacts;
+    }
+
+    public long getBytesTransferred() {
+        return artifacts.stream().mapToLong(Artifact::getBytesTransferred).sum();
+    }
+
+    // Milliseconds from the call until the last callback.
+    public long getDuration() {
+        return duration;
+    }
+
+    public enum Status {
+        // Fetched from a repository, also when a cached jar didn't match and was downloaded again.
+        DOWNLOADED,
+        // Used the jar already in the cache.
+        CACHED,
+        // Another downloader in this JVM already loaded this artifact, no callback was made for it.
+        LOADED_ELSEWHERE,
+        // Couldn't be loaded, see getFailure.
+        FAILED,
+        // Stopped or never called back because the call was cancelled or another dependency failed first.
+        CANCELLED
+    }
+
+    public static class Artifact {
+        private final Dependency dependency;
+        private final Status status;
+        private final Path path;
+        private final long bytesTransferred;
+        private final long duration;
+        private final Throwable failure;
+
+        public Artifact(Dependency dependency, Status status, Path path, long bytesTransferred, long duration, Throwable failure) {
+            this.dependency = dependency;
+            this.status = status;
+            this.path = path;
+            this.bytesTransferred = bytesTransferred;
+            this.duration = duration;
+            this.failure = failure;
+        }
+
+        public Dependency getDependency() {
+            return dependency;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        // The jar in the cache, null if it was loaded elsewhere or never made it there.
+        public Path getPath() {
+            return path;
+        }
+
+        // Body bytes read from repositories for this artifact, checksums included.
+        public long getBytesTransferred() {
+            return bytesTransferred;
+        }
+
+        // Milliseconds spent checking and downloading the jar, not counting the wait for a download thread.
+        public long getDuration() {
+            return duration;
+        }
+
+        // Why it failed, null unless the status is FAILED.
+        public Throwable getFailure() {
+            return failure;
+        }
+    }
+}
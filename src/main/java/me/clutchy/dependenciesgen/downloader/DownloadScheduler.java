@@ -0,0 +1,96 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs downloads on a bounded pool and caps how many connections are open to one repository host at a time.
+public class DownloadScheduler {
+
+    public static final int DEFAULT_THREADS = 16;
+    public static final int DEFAULT_PER_HOST = 6;
+
+    private static DownloadScheduler defaultScheduler;
+
+    private final ExecutorService executor;
+    private final int perHost;
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+    private ExecutorService chunkExecutor;
+
+    public DownloadScheduler(ExecutorService executor, int perHost) {
+        this.executor = executor;
+        this.perHost = Math.max(1, perHost);
+    }
+
+    public static DownloadScheduler bounded(int threads, int perHost) {
+        return new DownloadScheduler(Executors.newFixedThreadPool(Math.max(1, threads), newThreadFactory("dependenciesgen-download-")), perHost);
+    }
+
+    private static ThreadFactory newThreadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Virtual threads on JDK 21+, a normal bounded pool on anything older.
+    public static DownloadScheduler virtualThreads(int perHost) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new DownloadScheduler(executor, perHost);
+        } catch (ReflectiveOperationException e) {
+            return bounded(DEFAULT_THREADS, perHost);
+        }
+    }
+
+    // Shared by every downloader that wasn't given one so plugins loading at once still respect the host limit.
+    public static synchronized DownloadScheduler getDefault() {
+        if (defaultScheduler == null) defaultScheduler = bounded(DEFAULT_THREADS, DEFAULT_PER_HOST);
+        return defaultScheduler;
+    }
+
+    public Future<?> submit(Runnable task) {
+        return executor.submit(task);
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    // Ranges of one big download run here instead of on the download pool, which could already be full of downloads waiting on them.
+    // The host permits still limit how many actually transfer at once.
+    public synchronized ExecutorService getChunkExecutor() {
+        if (chunkExecutor == null) chunkExecutor = Executors.newCachedThreadPool(newThreadFactory("dependenciesgen-chunk-"));
+        return chunkExecutor;
+    }
+
+    // Blocks until a connection to the url's host is allowed, close the permit once done with the connection.
+    public Permit acquire(URL url) throws InterruptedException {
+        Semaphore semaphore = hosts.computeIfAbsent(url.getHost().toLowerCase(), host -> new Semaphore(perHost, true));
+        semaphore.acquire();
+        return new Permit(semaphore);
+    }
+
+    public static class Permit implements AutoCloseable {
+        private Semaphore semaphore;
+
+        private Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void close() {
+            if (semaphore == null) return;
+            semaphore.release();
+            semaphore = null;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package me.clutchy.dependenciesgen.downloader;
+
+// What a downloadDependencies call does when one of its dependencies can't be loaded.
+public enum FailurePolicy {
+    // Cancel everything still downloading and fail with the first error.
+    FAIL_FAST,
+    // Load everything else, then fail with every error at once.
+    COLLECT_ALL,
+    // Treat every dependency as optional, the call succeeds and lists the failed ones in its result.
+    SKIP
+}
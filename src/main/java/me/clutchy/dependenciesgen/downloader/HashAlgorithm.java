@@ -0,0 +1,38 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Checksums maven repositories publish next to each artifact.
+public enum HashAlgorithm {
+    MD5("MD5", "md5"),
+    SHA1("SHA-1", "sha1"),
+    SHA256("SHA-256", "sha256"),
+    SHA512("SHA-512", "sha512");
+
+    private final String digestName;
+    private final String extension;
+
+    HashAlgorithm(String digestName, String extension) {
+        this.digestName = digestName;
+        this.extension = extension;
+    }
+
+    public String getDigestName() {
+        return digestName;
+    }
+
+    // File extension of the published checksum, without the dot.
+    public String getExtension() {
+        return extension;
+    }
+
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(digestName);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has to support all of these.
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// A download that is still in progress, kept next to the jar as jar.part with the url and validators in jar.part.json.
+// The part is only resumed when the same url still hands out the same ETag or Last-Modified.
+class PartFile {
+
+    private final Path path;
+    private final Path meta;
+    private String url;
+    private String validator;
+
+    PartFile(Path target) {
+        this.path = target.resolveSibling(target.getFileName() + ".part");
+        this.meta = target.resolveSibling(target.getFileName() + ".part.json");
+        load();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    // There is a part on disk that getResumeOffset may let us continue.
+    boolean canResume() {
+        return validator != null && Files.isRegularFile(path);
+    }
+
+    // Sent as If-Range so the server sends the whole file again if it changed.
+    String getValidator() {
+        return validator;
+    }
+
+    // How many bytes we already have from this url, 0 to start from the beginning.
+    long getResumeOffset(String url) throws IOException {
+        if (validator == null || !url.equals(this.url) || !Files.isRegularFile(path)) return 0;
+        return Files.size(path);
+    }
+
+    // Remembers where the bytes come from before any are written so an interrupted download can be resumed.
+    void start(String url, String etag, String lastModified) throws IOException {
+        this.url = url;
+        // Weak ETags can't be used with If-Range
+        this.validator = etag != null && !etag.startsWith("W/") ? etag : lastModified;
+        if (validator == null) {
+            Files.deleteIfExists(meta);
+            return;
+        }
+        Path temp = Files.createTempFile(meta.getParent(), meta.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                new JsonObject().add("url", url).add("validator", validator).writeTo(writer);
+            }
+            move(temp, meta);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // First byte of a 206 response, -1 if the header is missing or broken.
+    static long getRangeStart(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) return -1;
+        int dash = contentRange.indexOf('-');
+        if (dash < 0) return -1;
+        try {
+            return Long.parseLong(contentRange.substring(6, dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    void complete(Path target) throws IOException {
+        move(path, target);
+        Files.deleteIfExists(meta);
+        validator = null;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(meta);
+        validator = null;
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(meta)) return;
+        try (Reader reader = Files.newBufferedReader(meta, StandardCharsets.UTF_8)) {
+            JsonValue value = Json.parse(reader);
+            if (!(value instanceof JsonObject)) return;
+            url = ((JsonObject) value).getString("url", null);
+            validator = ((JsonObject) value).getString("validator", null);
+        } catch (Exception e) {
+            // Broken metadata, the part just gets downloaded again.
+            url = null;
+            validator = null;
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// How requests reach a repository. Error statuses come back as responses, the downloader decides what they mean.
+public interface Transport {
+
+    Response send(Request request) throws IOException;
+
+    // java.net.http on JDK 11+ so connections are reused and can be HTTP/2, HttpURLConnection on anything older.
+    // HttpClientTransport is built from its own JDK 11 source set, so it is only ever loaded by name.
+    static Transport detect() {
+        try {
+            Class.forName("java.net.http.HttpClient");
+            return (Transport) Class.forName("me.clutchy.dependenciesgen.downloader.HttpClientTransport").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new UrlConnectionTransport();
+        }
+    }
+
+    class Request {
+        private final URL url;
+        private String method = "GET";
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private int connectTimeout;
+        private int readTimeout;
+
+        public Request(URL url) {
+            this.url = url;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public Request setMethod(String method) {
+            this.method = method;
+            return this;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        public Map<String, String> getHeaders() {
+            return Collections.unmodifiableMap(headers);
+        }
+
+        public Request setHeader(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        // Milliseconds, 0 waits forever. The read timeout is the longest we wait for any bytes, headers or body.
+        public Request setTimeouts(int connectTimeout, int readTimeout) {
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+    }
+
+    // Closing it gives the connection back for reuse where the transport can.
+    interface Response extends Closeable {
+        URL getUrl();
+
+        int getStatus();
+
+        // First value of the header or null.
+        String getHeader(String name);
+
+        // -1 if the server didn't say.
+        long getContentLength();
+
+        // Empty for HEAD, 304 and error statuses.
+        InputStream getBody() throws IOException;
+    }
+}
@@ -0,0 +1,62 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+// One HttpURLConnection per request, the JVM's keep-alive cache still reuses the socket when the body is read to the end.
+public class UrlConnectionTransport implements Transport {
+
+    @Override
+    public Response send(Request request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) request.getUrl().openConnection();
+        connection.setRequestMethod(request.getMethod());
+        connection.setConnectTimeout(request.getConnectTimeout());
+        connection.setReadTimeout(request.getReadTimeout());
+        request.getHeaders().forEach(connection::setRequestProperty);
+        connection.connect();
+        int status = connection.getResponseCode();
+        return new Response() {
+            private InputStream body;
+
+            @Override
+            public URL getUrl() {
+                return request.getUrl();
+            }
+
+            @Override
+            public int getStatus() {
+                return status;
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return connection.getHeaderField(name);
+            }
+
+            @Override
+            public long getContentLength() {
+                return connection.getContentLengthLong();
+            }
+
+            @Override
+            public InputStream getBody() throws IOException {
+                if (body == null) body = status >= 400 ? new ByteArrayInputStream(new byte[0]) : connection.getInputStream();
+                return body;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (body != null) {
+                    body.close();
+                } else if (status >= 400) {
+                    connection.disconnect();
+                } else {
+                    connection.getInputStream().close();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,177 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import me.clutchy.dependenciesgen.shared.Dependency;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.logging.Logger;
+
+// Picks one version of every group:name in the tree before anything is downloaded.
+// Only the subtrees of the winning versions count, whatever a losing version pulled in is dropped with it.
+public class VersionResolver {
+
+    private static final int MAX_PASSES = 10;
+    // Qualifiers in the order Maven sorts them, a plain release is the empty one. Unknown qualifiers sort after all of these.
+    private static final List<String> QUALIFIERS = Arrays.asList("alpha", "beta", "milestone", "rc", "snapshot", "", "sp");
+
+    private VersionResolver() {
+    }
+
+    public enum Strategy {
+        // Closest to a root wins and the first one declared on a tie, like Maven.
+        NEAREST,
+        // Highest version anywhere in the tree wins, like Gradle.
+        HIGHEST
+    }
+
+    // Every winning dependency once, in the order they were first reached.
+    public static List<Dependency> resolve(List<Dependency> roots, Strategy strategy, Logger logger) {
+        Map<String, Dependency> winners = pick(roots, strategy, Collections.emptyMap());
+        // Evicting a version can drop the only path to another module's highest version, so go again until nothing changes
+        for (int pass = 0; strategy == Strategy.HIGHEST && pass < MAX_PASSES; pass++) {
+            Map<String, Dependency> next = pick(roots, strategy, winners);
+            boolean changed = next.size() != winners.size();
+            for (Map.Entry<String, Dependency> entry : next.entrySet()) {
+                Dependency previous = winners.get(entry.getKey());
+                if (previous == null || !previous.getVersion().equals(entry.getValue().getVersion())) changed = true;
+            }
+            winners = next;
+            if (!changed) break;
+        }
+        List<Dependency> resolved = new ArrayList<>();
+        Set<Dependency> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Queue<Dependency> queue = new ArrayDeque<>(roots);
+        while (!queue.isEmpty()) {
+            Dependency dependency = queue.poll();
+            if (!visited.add(dependency)) continue;
+            Dependency winner = winners.get(getKey(dependency));
+            if (winner == null) continue;
+            if (!winner.getVersion().equals(dependency.getVersion())) {
+                logger.info("Dependency " + dependency.getName() + " " + winner.getVersion() + " used instead of " + dependency.getVersion());
+                continue;
+            }
+            if (winner == dependency) resolved.add(dependency);
+            queue.addAll(dependency.getDependencies());
+        }
+        return resolved;
+    }
+
+    // Breadth first so with NEAREST the first version we meet is the nearest.
+    // Nothing below a version that lost, now or in the previous pass, is looked at.
+    private static Map<String, Dependency> pick(List<Dependency> roots, Strategy strategy, Map<String, Dependency> previous) {
+        Map<String, Dependency> winners = new LinkedHashMap<>();
+        Set<Dependency> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Queue<Dependency> queue = new ArrayDeque<>(roots);
+        while (!queue.isEmpty()) {
+            Dependency dependency = queue.poll();
+            if (!visited.add(dependency)) continue;
+            String key = getKey(dependency);
+            if (strategy == Strategy.NEAREST) {
+                winners.putIfAbsent(key, dependency);
+            } else {
+                winners.merge(key, dependency, (current, next) -> compare(next.getVersion(), current.getVersion()) > 0 ? next : current);
+            }
+            Dependency winner = (strategy == Strategy.NEAREST ? winners : previous).get(key);
+            if (winner == null || winner.getVersion().equals(dependency.getVersion())) queue.addAll(dependency.getDependencies());
+        }
+        return winners;
+    }
+
+    private static String getKey(Dependency dependency) {
+        return dependency.getGroup() + ":" + dependency.getName();
+    }
+
+    // Maven style ordering: numbers compare as numbers, 1.0 equals 1.0.0, 1.0-rc1 comes before 1.0 and 1.0.1 after it.
+    public static int compare(String first, String second) {
+        List<Object> firstItems = parse(first);
+        List<Object> secondItems = parse(second);
+        for (int i = 0; i < Math.max(firstItems.size(), secondItems.size()); i++) {
+            Object firstItem = i < firstItems.size() ? firstItems.get(i) : null;
+            Object secondItem = i < secondItems.size() ? secondItems.get(i) : null;
+            int result = compareItems(firstItem, secondItem);
+            if (result != 0) return result;
+        }
+        return 0;
+    }
+
+    private static int compareItems(Object first, Object second) {
+        if (first == null) return -compareItems(second, null);
+        if (first instanceof BigInteger) {
+            if (second == null) return ((BigInteger) first).signum();
+            return second instanceof BigInteger ? ((BigInteger) first).compareTo((BigInteger) second) : 1;
+        }
+        if (second instanceof BigInteger) return -1;
+        // A missing item is a plain release
+        return compareQualifiers((String) first, second == null ? "" : (String) second);
+    }
+
+    private static int compareQualifiers(String first, String second) {
+        int firstRank = QUALIFIERS.indexOf(first);
+        int secondRank = QUALIFIERS.indexOf(second);
+        if (firstRank >= 0 && secondRank >= 0) return Integer.compare(firstRank, secondRank);
+        if (firstRank >= 0) return -1;
+        if (secondRank >= 0) return 1;
+        return first.compareTo(second);
+    }
+
+    // Splits on dots, dashes and every switch between digits and letters: 1.2.1-RC1 is [1, 2, 1, rc, 1].
+    private static List<Object> parse(String version) {
+        List<Object> items = new ArrayList<>();
+        String lower = version.toLowerCase(Locale.ROOT);
+        int start = 0;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean end = i == lower.length();
+            char c = end ? '.' : lower.charAt(i);
+            boolean separator = c == '.' || c == '-' || c == '_' || c == '+';
+            boolean switched = !end && !separator && i > start && Character.isDigit(c) != Character.isDigit(lower.charAt(i - 1));
+            if (separator || switched) {
+                if (i > start) {
+                    Object item = toItem(lower.substring(start, i));
+                    // Same for zeros right before a qualifier, 1.0.0-rc1 is 1-rc1
+                    if (item instanceof String) trim(items);
+                    items.add(item);
+                }
+                start = separator ? i + 1 : i;
+            }
+        }
+        trim(items);
+        return items;
+    }
+
+    // Trailing zeros and release qualifiers don't change anything, 1.0.0 is 1
+    private static void trim(List<Object> items) {
+        while (!items.isEmpty() && (BigInteger.ZERO.equals(items.get(items.size() - 1)) || "".equals(items.get(items.size() - 1)))) {
+            items.remove(items.size() - 1);
+        }
+    }
+
+    private static Object toItem(String token) {
+        if (Character.isDigit(token.charAt(0))) return new BigInteger(token);
+        switch (token) {
+            case "a":
+                return "alpha";
+            case "b":
+                return "beta";
+            case "m":
+                return "milestone";
+            case "cr":
+                return "rc";
+            case "ga":
+            case "final":
+            case "release":
+                return "";
+            default:
+                return token;
+        }
+    }
+}
@@ -7,6 +7,12 @@ import java.util.List;
 
 public class DependenciesGen {
     public List<String> ignored;
+    public ResolutionMode resolution = ResolutionMode.GRADLE;
+    public boolean graphFormat = false;
+    public boolean binaryManifest = false;
+    public int probeThreads = 8;
+    public boolean cacheRepositories = true;
+    public long missingRepositoryTtlHours = 24;
 
     public DependenciesGen(Project project) {
         ignored = project.getObjects().listProperty(String.class).getOrElse(new ArrayList<>());
@@ -0,0 +1,84 @@
+package me.clutchy.dependenciesgen.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.artifacts.repositories.ArtifactRepository;
+import org.gradle.api.artifacts.repositories.UrlArtifactRepository;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+
+@CacheableTask
+public abstract class GenDependenciesTask extends DefaultTask {
+
+    public static final String CONFIGURATION = "apiDependenciesMetadata";
+
+    @Input
+    public abstract ListProperty<String> getIgnored();
+
+    @Input
+    public abstract ListProperty<String> getRepositories();
+
+    @Input
+    public abstract Property<Boolean> getGraphFormat();
+
+    // The resolved graph with gradle's repositories already filled in, so we rerun whenever it changes.
+    @Input
+    public abstract Property<ResolvedGraph> getDependencyGraph();
+
+    @Internal
+    public abstract Property<RepositoryLookupService> getLookupService();
+
+    @OutputFile
+    public abstract RegularFileProperty getOutputFile();
+
+    @Input
+    public abstract Property<Boolean> getBinaryManifest();
+
+    // Binary copy of the graph for faster loading. Always declared, even when turned off, so gradle removes a stale one restoring from the cache.
+    @OutputFile
+    public abstract RegularFileProperty getManifestFile();
+
+    @Inject
+    public abstract WorkerExecutor getWorkerExecutor();
+
+    @TaskAction
+    public void generate() {
+        // Hand it to a worker so other projects can generate at the same time with --parallel
+        getWorkerExecutor().noIsolation().submit(GenerateDependencies.class, params -> {
+            params.getIgnored().set(getIgnored());
+            params.getRepositories().set(getRepositories());
+            params.getGraphFormat().set(getGraphFormat());
+            params.getDependencyGraph().set(getDependencyGraph());
+            params.getLookupService().set(getLookupService());
+            params.getOutputFile().set(getOutputFile());
+            params.getBinaryManifest().set(getBinaryManifest());
+            params.getManifestFile().set(getManifestFile());
+        });
+    }
+
+    public static List<String> getRepositories(Iterable<ArtifactRepository> artifactRepos) {
+        List<String> repositories = new ArrayList<>();
+        // Get all the repositories for a project
+        for (ArtifactRepository artifactRepo : artifactRepos) {
+            // Only url repositories
+            if (artifactRepo instanceof UrlArtifactRepository) {
+                String url = ((UrlArtifactRepository) artifactRepo).getUrl().toString();
+                // Check if not a local file
+                if (url.matches("(?!file\\b)\\w+?:\\/\\/.*")) {
+                    repositories.add(url);
+                }
+            }
+        }
+        return repositories;
+    }
+}
@@ -0,0 +1,121 @@
+package me.clutchy.dependenciesgen.gradle;
+
+import com.eclipsesource.json.JsonStreamWriter;
+import me.clutchy.dependenciesgen.shared.Dependency;
+import me.clutchy.dependenciesgen.shared.DependencyGraph;
+import me.clutchy.dependenciesgen.shared.DependencyManifest;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Probes the repositories and writes dependencies.json for one project, off the task execution thread.
+public abstract class GenerateDependencies implements WorkAction<GenerateDependencies.Params> {
+
+    public interface Params extends WorkParameters {
+        ListProperty<String> getIgnored();
+
+        ListProperty<String> getRepositories();
+
+        Property<Boolean> getGraphFormat();
+
+        Property<ResolvedGraph> getDependencyGraph();
+
+        Property<RepositoryLookupService> getLookupService();
+
+        RegularFileProperty getOutputFile();
+
+        Property<Boolean> getBinaryManifest();
+
+        // Where the binary manifest goes, deleted when it is turned off so processResources never ships a stale one.
+        RegularFileProperty getManifestFile();
+    }
+
+    @Override
+    public void execute() {
+        Path output = getParameters().getOutputFile().get().getAsFile().toPath();
+        try {
+            Files.createDirectories(output.getParent());
+            List<Dependency> dependencies = getAllDependencies();
+            // Stream it out so we never hold a second copy of the graph as json or as one big string
+            try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8); JsonStreamWriter json = new JsonStreamWriter(writer)) {
+                if (getParameters().getGraphFormat().get()) {
+                    DependencyGraph.writeJSON(dependencies, json);
+                } else {
+                    Dependency.writeJSON(dependencies, json);
+                }
+            }
+            Path manifest = getParameters().getManifestFile().get().getAsFile().toPath();
+            if (getParameters().getBinaryManifest().get()) {
+                try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(manifest))) {
+                    DependencyManifest.write(dependencies, stream);
+                }
+            } else {
+                Files.deleteIfExists(manifest);
+            }
+        } catch (IOException e) {
+            // Fail the task so a half written file is never taken as up to date or stored in the build cache
+            throw new UncheckedIOException("Error writing dependencies file", e);
+        }
+    }
+
+    private List<Dependency> getAllDependencies() {
+        RepositoryProber lookup = getParameters().getLookupService().get().getProber();
+        List<String> repositories = getParameters().getRepositories().get();
+        Set<String> ignored = new HashSet<>(getParameters().getIgnored().get());
+        return getAllDependencies(lookup, repositories, ignored, getParameters().getDependencyGraph().get());
+    }
+
+    static List<Dependency> getAllDependencies(RepositoryProber lookup, List<String> repositories, Set<String> ignored, ResolvedGraph graph) {
+        List<Dependency> dependencies = new ArrayList<>();
+        // Queue every lookup first so the probes run while we wait on the first ones
+        Set<Integer> submitted = new HashSet<>();
+        graph.getRoots().forEach(id -> submitProbes(lookup, repositories, ignored, graph, submitted, id));
+        // Modules show up under many parents so only build each subtree once and share it
+        List<List<Dependency>> built = new ArrayList<>();
+        graph.getModules().forEach(module -> built.add(null));
+        graph.getRoots().forEach(id -> dependencies.addAll(getDependenciesFromParent(lookup, repositories, ignored, graph, built, id)));
+        return dependencies;
+    }
+
+    private static void submitProbes(RepositoryProber lookup, List<String> repositories, Set<String> ignored, ResolvedGraph graph, Set<Integer> submitted, int id) {
+        if (!submitted.add(id)) return;
+        ResolvedGraph.Module module = graph.getModules().get(id);
+        if (ignored.contains(module.getGroup() + ":" + module.getName())) return;
+        // Gradle already told us where this one came from
+        if (module.getRepo() == null) lookup.submit(repositories, module.getGroup(), module.getName(), module.getVersion());
+        module.getChildren().forEach(childId -> submitProbes(lookup, repositories, ignored, graph, submitted, childId));
+    }
+
+    private static List<Dependency> getDependenciesFromParent(RepositoryProber lookup, List<String> repositories, Set<String> ignored, ResolvedGraph graph, List<List<Dependency>> built, int id) {
+        List<Dependency> dependencies = built.get(id);
+        if (dependencies != null) return dependencies;
+        dependencies = new ArrayList<>();
+        ResolvedGraph.Module module = graph.getModules().get(id);
+        String group = module.getGroup();
+        String name = module.getName();
+        if (!ignored.contains(group + ":" + name)) {
+            String version = module.getVersion();
+            String repo = module.getRepo() != null ? module.getRepo() : lookup.getRepo(repositories, group, name, version);
+            List<Dependency> children = new ArrayList<>();
+            module.getChildren().forEach(childId -> children.addAll(getDependenciesFromParent(lookup, repositories, ignored, graph, built, childId)));
+            dependencies.add(new Dependency(group, name, version, repo, children));
+        }
+        built.set(id, dependencies);
+        return dependencies;
+    }
+}
@@ -0,0 +1,112 @@
+package me.clutchy.dependenciesgen.gradle;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RepositoryCache {
+
+    private final Path file;
+    private final long negativeTtl;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean changed = false;
+
+    public RepositoryCache(Path file, long negativeTtl) {
+        this.file = file;
+        this.negativeTtl = negativeTtl;
+        load();
+    }
+
+    // Cached entry for the lookup, or null when it has to be probed again.
+    public Entry get(List<String> repositories, String group, String name, String version) {
+        if (isSnapshot(version)) return null;
+        Entry entry = entries.get(getKey(repositories, group, name, version));
+        if (entry == null) return null;
+        // Missing dependencies might get published later so only trust that for a while
+        if (entry.repo == null && System.currentTimeMillis() - entry.time > negativeTtl) return null;
+        return entry;
+    }
+
+    public void put(List<String> repositories, String group, String name, String version, String repo) {
+        // Snapshots can move between repositories so never keep them
+        if (isSnapshot(version)) return;
+        entries.put(getKey(repositories, group, name, version), new Entry(repo, System.currentTimeMillis()));
+        changed = true;
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) return;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonObject object = Json.parse(reader).asObject();
+            for (JsonObject.Member member : object) {
+                if (member.getValue() instanceof JsonObject) {
+                    JsonObject json = (JsonObject) member.getValue();
+                    entries.put(member.getName(), new Entry(json.getString("repo", null), json.getLong("time", 0)));
+                }
+            }
+        } catch (Exception e) {
+            // Broken cache file, just start over.
+            entries.clear();
+        }
+    }
+
+    public synchronized void save() throws IOException {
+        if (!changed) return;
+        changed = false;
+        JsonObject object = new JsonObject();
+        entries.forEach((key, entry) -> {
+            JsonObject json = new JsonObject().add("time", entry.time);
+            if (entry.repo != null) json.add("repo", entry.repo);
+            object.add(key, json);
+        });
+        Files.createDirectories(file.getParent());
+        // Write to a temp file and move it so parallel builds never read a half written cache
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                object.writeTo(writer);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private boolean isSnapshot(String version) {
+        return version.endsWith("-SNAPSHOT");
+    }
+
+    private String getKey(List<String> repositories, String group, String name, String version) {
+        return group + ":" + name + ":" + version + "@" + String.join(",", repositories);
+    }
+
+    public static class Entry {
+        private final String repo;
+        private final long time;
+
+        private Entry(String repo, long time) {
+            this.repo = repo;
+            this.time = time;
+        }
+
+        public String getRepo() {
+            return repo;
+        }
+    }
+}
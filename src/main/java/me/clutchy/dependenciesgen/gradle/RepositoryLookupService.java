@@ -0,0 +1,52 @@
+package me.clutchy.dependenciesgen.gradle;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// One probe pool and repository cache for the whole build so every subproject shares connections and lookups.
+public abstract class RepositoryLookupService implements BuildService<RepositoryLookupService.Params>, AutoCloseable {
+
+    public static final String NAME = "dependenciesgen-repositories";
+
+    private RepositoryCache cache;
+    private RepositoryProber prober;
+
+    public interface Params extends BuildServiceParameters {
+        Property<Integer> getProbeThreads();
+
+        // Where repository lookups are remembered, unset to always probe.
+        RegularFileProperty getRepositoryCache();
+
+        Property<Long> getMissingRepositoryTtlHours();
+    }
+
+    // Started by the first project that needs it, every project after that shares it.
+    synchronized RepositoryProber getProber() {
+        if (prober == null) {
+            Params params = getParameters();
+            if (params.getRepositoryCache().isPresent()) {
+                cache = new RepositoryCache(params.getRepositoryCache().get().getAsFile().toPath(), TimeUnit.HOURS.toMillis(params.getMissingRepositoryTtlHours().get()));
+            }
+            prober = new RepositoryProber(params.getProbeThreads().get(), cache);
+        }
+        return prober;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (prober == null) return;
+        prober.close();
+        if (cache != null) {
+            try {
+                cache.save();
+            } catch (IOException e) {
+                System.out.println("Error writing repository cache");
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package me.clutchy.dependenciesgen.gradle;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RepositoryProber implements Closeable {
+
+    private static final Logger LOGGER = Logging.getLogger(RepositoryProber.class);
+    // A stalled repository would otherwise hold a probe thread forever
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 30000;
+
+    private final ExecutorService executor;
+    private final RepositoryCache cache;
+    private final Map<String, List<Future<Boolean>>> lookups = new ConcurrentHashMap<>();
+
+    public RepositoryProber(int threads) {
+        this(threads, null);
+    }
+
+    public RepositoryProber(int threads, RepositoryCache cache) {
+        this.cache = cache;
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "dependenciesgen-probe-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Queue a HEAD check for every repository so the pool can work on them while we walk the rest of the graph.
+    public void submit(List<String> repositories, String group, String name, String version) {
+        if (cache != null && cache.get(repositories, group, name, version) != null) return;
+        lookups.computeIfAbsent(getKey(repositories, group, name, version), key -> {
+            List<Future<Boolean>> checks = new ArrayList<>();
+            for (String repository : repositories) {
+                URL dependencyURL = getDependencyURL(repository, group, name, version);
+                checks.add(executor.submit(() -> checkIfURLExists(dependencyURL)));
+            }
+            return checks;
+        });
+    }
+
+    // First repository in declaration order that has the dependency, or null if none of them do.
+    // Only a sure answer is cached, a repository we couldn't reach might have it next time.
+    // Not being able to reach one never fails the build, the dependency just gets no repository like one nobody has.
+    public String getRepo(List<String> repositories, String group, String name, String version) {
+        if (cache != null) {
+            RepositoryCache.Entry entry = cache.get(repositories, group, name, version);
+            if (entry != null) return entry.getRepo();
+        }
+        submit(repositories, group, name, version);
+        List<Future<Boolean>> checks = lookups.get(getKey(repositories, group, name, version));
+        Throwable error = null;
+        for (int i = 0; i < checks.size(); i++) {
+            try {
+                if (!checks.get(i).get()) continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GradleException("Interrupted looking up " + group + ":" + name + ":" + version, e);
+            } catch (ExecutionException e) {
+                if (error == null) error = e.getCause();
+                continue;
+            }
+            // Anything after the first match does not matter anymore
+            for (int j = i + 1; j < checks.size(); j++) {
+                checks.get(j).cancel(true);
+            }
+            if (cache != null && error == null) cache.put(repositories, group, name, version, repositories.get(i));
+            return repositories.get(i);
+        }
+        if (error != null) {
+            LOGGER.warn("Could not check every repository for " + group + ":" + name + ":" + version + ", it is written without one: " + error.getMessage());
+            return null;
+        }
+        if (cache != null) cache.put(repositories, group, name, version, null);
+        return null;
+    }
+
+    private String getKey(List<String> repositories, String group, String name, String version) {
+        return group + ":" + name + ":" + version + "@" + String.join(",", repositories);
+    }
+
+    private URL getDependencyURL(String url, String group, String name, String version) {
+        if (url == null || url.trim().isEmpty()) return null;
+        if (!url.endsWith("/")) url += "/";
+        try {
+            return new URL(url + getPath(group, name, version) + getFileName(name, version));
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private String getPath(String group, String name, String version) {
+        return group.replaceAll("\\.", "/") + "/" + name + "/" + version + "/";
+    }
+
+    private String getFileName(String name, String version) {
+        return name + "-" + version + ".jar";
+    }
+
+    // False when the repository says it doesn't have it or won't show it to us, probes send no credentials.
+    // Server errors and failed connections are errors, the repository might have it next time.
+    private boolean checkIfURLExists(URL url) throws IOException {
+        if (url == null) return false;
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("HEAD");
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        int responseCode = connection.getResponseCode();
+        release(connection, responseCode);
+        if (200 <= responseCode && responseCode <= 399) return true;
+        if (responseCode == 401 || responseCode == 403 || responseCode == 404 || responseCode == 410) return false;
+        throw new IOException("Server returned HTTP response code: " + responseCode + " for URL: " + url);
+    }
+
+    // Reading the body to the end and closing it, instead of disconnecting, keeps the connection for the next probe to that host.
+    private void release(HttpURLConnection connection, int responseCode) {
+        try (InputStream body = responseCode >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+            if (body == null) return;
+            byte[] buffer = new byte[1024];
+            while (body.read(buffer) >= 0) {
+                // Nothing to keep
+            }
+        } catch (IOException e) {
+            // Broken connection, it won't be reused anyway
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,8 @@
+package me.clutchy.dependenciesgen.gradle;
+
+public enum ResolutionMode {
+    // Use the repository gradle resolved the dependency from and only probe what it can't tell us.
+    GRADLE,
+    // Always send HEAD requests to every repository.
+    PROBE
+}
@@ -0,0 +1,163 @@
+package me.clutchy.dependenciesgen.gradle;
+
+import org.gradle.api.artifacts.ArtifactRepositoryContainer;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.artifacts.repositories.ArtifactRepository;
+import org.gradle.api.artifacts.repositories.UrlArtifactRepository;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.internal.artifacts.result.ResolvedComponentResultInternal;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Snapshot of the resolved dependency graph that can be used as a task input and stored in the configuration cache.
+public class ResolvedGraph implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Module> modules;
+    private final List<Integer> roots;
+
+    public ResolvedGraph(List<Module> modules, List<Integer> roots) {
+        this.modules = modules;
+        this.roots = roots;
+    }
+
+    public static ResolvedGraph of(Configuration configuration, ArtifactRepositoryContainer repositoryContainer, List<String> repositories, ResolutionMode resolution) {
+        Map<String, String> attributed = resolution == ResolutionMode.GRADLE ? getResolvedRepositories(configuration, repositoryContainer, repositories) : Collections.emptyMap();
+        List<Module> modules = new ArrayList<>();
+        Map<ResolvedDependency, Integer> ids = new HashMap<>();
+        List<Integer> roots = new ArrayList<>();
+        configuration.getResolvedConfiguration().getFirstLevelModuleDependencies().forEach(depend -> roots.add(addModule(modules, ids, attributed, depend)));
+        return new ResolvedGraph(modules, roots);
+    }
+
+    private static int addModule(List<Module> modules, Map<ResolvedDependency, Integer> ids, Map<String, String> attributed, ResolvedDependency depend) {
+        Integer id = ids.get(depend);
+        if (id != null) return id;
+        List<Integer> children = new ArrayList<>();
+        depend.getChildren().forEach(childDepend -> {
+            if (childDepend.getParents().contains(depend) && childDepend.getConfiguration().equals("compile")) {
+                children.add(addModule(modules, ids, attributed, childDepend));
+            }
+        });
+        String group = depend.getModuleGroup();
+        String name = depend.getModuleName();
+        String version = depend.getModuleVersion();
+        modules.add(new Module(group, name, version, attributed.get(getKey(group, name, version)), children));
+        ids.put(depend, modules.size() - 1);
+        return modules.size() - 1;
+    }
+
+    // Gradle already knows which repository each component came from, so use that instead of asking again.
+    private static Map<String, String> getResolvedRepositories(Configuration configuration, ArtifactRepositoryContainer repositoryContainer, List<String> repositories) {
+        Map<String, String> attributed = new HashMap<>();
+        for (ResolvedComponentResult component : configuration.getIncoming().getResolutionResult().getAllComponents()) {
+            String repositoryName = getRepositoryName(component);
+            if (repositoryName == null) continue;
+            ArtifactRepository artifactRepo = repositoryContainer.findByName(repositoryName);
+            if (!(artifactRepo instanceof UrlArtifactRepository)) continue;
+            String url = ((UrlArtifactRepository) artifactRepo).getUrl().toString();
+            // Local repositories are left to probing just like before
+            if (!repositories.contains(url)) continue;
+            ModuleVersionIdentifier id = component.getModuleVersion();
+            if (id != null) attributed.put(getKey(id.getGroup(), id.getName(), id.getVersion()), url);
+        }
+        return attributed;
+    }
+
+    // Internal and deprecated gradle api, a gradle without it just leaves the component to probing.
+    private static String getRepositoryName(ResolvedComponentResult component) {
+        try {
+            if (!(component instanceof ResolvedComponentResultInternal)) return null;
+            return ((ResolvedComponentResultInternal) component).getRepositoryName();
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    private static String getKey(String group, String name, String version) {
+        return group + ":" + name + ":" + version;
+    }
+
+    public List<Module> getModules() {
+        return modules;
+    }
+
+    public List<Integer> getRoots() {
+        return roots;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof ResolvedGraph)) return false;
+        ResolvedGraph graph = (ResolvedGraph) other;
+        return modules.equals(graph.modules) && roots.equals(graph.roots);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(modules, roots);
+    }
+
+    public static class Module implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String group;
+        private final String name;
+        private final String version;
+        private final String repo;
+        private final List<Integer> children;
+
+        public Module(String group, String name, String version, String repo, List<Integer> children) {
+            this.group = group;
+            this.name = name;
+            this.version = version;
+            this.repo = repo;
+            this.children = children;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        // Repository gradle resolved this module from, null when it has to be probed.
+        public String getRepo() {
+            return repo;
+        }
+
+        public List<Integer> getChildren() {
+            return children;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof Module)) return false;
+            Module module = (Module) other;
+            return group.equals(module.group) && name.equals(module.name) && version.equals(module.version) && Objects.equals(repo, module.repo) && children.equals(module.children);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(group, name, version, repo, children);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package me.clutchy.dependenciesgen.shared;
 
 import com.eclipsesource.json.*;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -40,6 +41,20 @@ public class Dependency implements Comparable<Dependency> {
         this.dependencies = dependencies;
     }
 
+    // Reads either the nested array layout or the flat graph layout.
+    public static List<Dependency> fromJSON(JsonValue value) {
+        if (DependencyGraph.isGraph(value)) return DependencyGraph.fromJSON(value.asObject());
+        List<Dependency> dependencies = new ArrayList<>();
+        if (value instanceof JsonArray) {
+            for (JsonValue jsonValue : value.asArray()) {
+                if (jsonValue instanceof JsonObject) {
+                    dependencies.add(new Dependency((JsonObject) jsonValue));
+                }
+            }
+        }
+        return dependencies;
+    }
+
     @Override
     public String toString() {
         return toJSON().toString();
@@ -51,6 +66,30 @@ public class Dependency implements Comparable<Dependency> {
         return toJSONNoDepends().add("dependencies", array);
     }
 
+    // Same output as toJSON but written straight to the stream without building the json objects.
+    public void writeJSON(JsonStreamWriter writer) throws IOException {
+        writeJSONNoDepends(writer).name("dependencies").beginArray();
+        for (Dependency dependency : dependencies) {
+            dependency.writeJSON(writer);
+        }
+        writer.endArray().endObject();
+    }
+
+    public static void writeJSON(List<Dependency> dependencies, JsonStreamWriter writer) throws IOException {
+        writer.beginArray();
+        for (Dependency dependency : dependencies) {
+            dependency.writeJSON(writer);
+        }
+        writer.endArray();
+    }
+
+    // Leaves the object open so more members can be added.
+    JsonStreamWriter writeJSONNoDepends(JsonStreamWriter writer) throws IOException {
+        writer.beginObject().name("group").value(group).name("name").value(name).name("version").value(version);
+        if (repo != null) writer.name("repo").value(repo);
+        return writer;
+    }
+
     private JsonObject toJSONNoDepends() {
         JsonObject jsonObject = new JsonObject().add("group", group).add("name", name).add("version", version);
         if (repo != null) jsonObject.add("repo", repo);
@@ -0,0 +1,108 @@
+package me.clutchy.dependenciesgen.shared;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonStreamWriter;
+import com.eclipsesource.json.JsonValue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Flat layout where every dependency is written once and children point at it by index.
+// {"nodes": [{"group": .., "name": .., "version": .., "repo": .., "dependencies": [0, 1]}], "roots": [2]}
+public class DependencyGraph {
+
+    private DependencyGraph() {
+    }
+
+    public static boolean isGraph(JsonValue value) {
+        return value instanceof JsonObject && ((JsonObject) value).get("nodes") instanceof JsonArray;
+    }
+
+    public static JsonObject toJSON(List<Dependency> dependencies) {
+        JsonArray nodes = new JsonArray();
+        Map<Dependency, Integer> ids = new IdentityHashMap<>();
+        JsonArray roots = new JsonArray();
+        dependencies.forEach(dependency -> roots.add(addNode(nodes, ids, dependency)));
+        return new JsonObject().add("nodes", nodes).add("roots", roots);
+    }
+
+    // Children always get added before their parent so readers never have to look ahead.
+    private static int addNode(JsonArray nodes, Map<Dependency, Integer> ids, Dependency dependency) {
+        Integer id = ids.get(dependency);
+        if (id != null) return id;
+        JsonArray children = new JsonArray();
+        dependency.getDependencies().forEach(child -> children.add(addNode(nodes, ids, child)));
+        JsonObject node = new JsonObject().add("group", dependency.getGroup()).add("name", dependency.getName()).add("version", dependency.getVersion());
+        if (dependency.getRepo() != null) node.add("repo", dependency.getRepo());
+        nodes.add(node.add("dependencies", children));
+        ids.put(dependency, nodes.size() - 1);
+        return nodes.size() - 1;
+    }
+
+    // Same layout as toJSON but every node goes straight to the stream as soon as its children are written.
+    public static void writeJSON(List<Dependency> dependencies, JsonStreamWriter writer) throws IOException {
+        Map<Dependency, Integer> ids = new IdentityHashMap<>();
+        List<Integer> roots = new ArrayList<>();
+        writer.beginObject().name("nodes").beginArray();
+        for (Dependency dependency : dependencies) {
+            roots.add(writeNode(writer, ids, dependency));
+        }
+        writer.endArray().name("roots").beginArray();
+        for (int root : roots) {
+            writer.value(root);
+        }
+        writer.endArray().endObject();
+    }
+
+    private static int writeNode(JsonStreamWriter writer, Map<Dependency, Integer> ids, Dependency dependency) throws IOException {
+        Integer id = ids.get(dependency);
+        if (id != null) return id;
+        List<Integer> children = new ArrayList<>();
+        for (Dependency child : dependency.getDependencies()) {
+            children.add(writeNode(writer, ids, child));
+        }
+        dependency.writeJSONNoDepends(writer).name("dependencies").beginArray();
+        for (int child : children) {
+            writer.value(child);
+        }
+        writer.endArray().endObject();
+        ids.put(dependency, ids.size());
+        return ids.size() - 1;
+    }
+
+    public static List<Dependency> fromJSON(JsonObject json) {
+        JsonArray nodes = json.get("nodes").asArray();
+        Dependency[] built = new Dependency[nodes.size()];
+        List<Dependency> dependencies = new ArrayList<>();
+        JsonValue roots = json.get("roots");
+        if (roots instanceof JsonArray) {
+            for (JsonValue root : roots.asArray()) {
+                Dependency dependency = getNode(nodes, built, root.asInt(), 0);
+                if (dependency != null) dependencies.add(dependency);
+            }
+        }
+        return dependencies;
+    }
+
+    private static Dependency getNode(JsonArray nodes, Dependency[] built, int id, int depth) {
+        if (id < 0 || id >= built.length || depth > built.length) return null;
+        if (built[id] != null) return built[id];
+        JsonValue value = nodes.get(id);
+        if (!(value instanceof JsonObject)) return null;
+        JsonObject node = (JsonObject) value;
+        List<Dependency> children = new ArrayList<>();
+        JsonValue childIds = node.get("dependencies");
+        if (childIds instanceof JsonArray) {
+            for (JsonValue childId : childIds.asArray()) {
+                Dependency child = getNode(nodes, built, childId.asInt(), depth + 1);
+                if (child != null) children.add(child);
+            }
+        }
+        built[id] = new Dependency(node.getString("group", ""), node.getString("name", ""), node.getString("version", ""), node.getString("repo", null), children);
+        return built[id];
+    }
+}
@@ -0,0 +1,159 @@
+package me.clutchy.dependenciesgen.shared;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Binary version of the graph layout so loading it is just reading numbers.
+// "DGEN", format version, string table, nodes (group, name, version, repo + 1 or 0, child count, children), roots.
+// Every number is an unsigned varint and children always come before their parent.
+public class DependencyManifest {
+
+    public static final String FILE_NAME = "dependencies.bin";
+
+    private static final byte[] MAGIC = {'D', 'G', 'E', 'N'};
+    public static final int HEADER_LENGTH = MAGIC.length;
+    private static final int VERSION = 1;
+
+    private DependencyManifest() {
+    }
+
+    public static boolean isManifest(byte[] header) {
+        return header.length >= MAGIC.length && Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC);
+    }
+
+    public static void write(List<Dependency> dependencies, OutputStream out) throws IOException {
+        // Number every node and string first so the tables can go before the nodes
+        List<Dependency> nodes = new ArrayList<>();
+        Map<Dependency, Integer> ids = new IdentityHashMap<>();
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        int[] roots = new int[dependencies.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = addNode(nodes, ids, strings, dependencies.get(i));
+        }
+        out.write(MAGIC);
+        writeVarInt(out, VERSION);
+        writeVarInt(out, strings.size());
+        for (String string : strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+        writeVarInt(out, nodes.size());
+        for (Dependency node : nodes) {
+            writeVarInt(out, strings.get(node.getGroup()));
+            writeVarInt(out, strings.get(node.getName()));
+            writeVarInt(out, strings.get(node.getVersion()));
+            writeVarInt(out, node.getRepo() == null ? 0 : strings.get(node.getRepo()) + 1);
+            writeVarInt(out, node.getDependencies().size());
+            for (Dependency child : node.getDependencies()) {
+                writeVarInt(out, ids.get(child));
+            }
+        }
+        writeVarInt(out, roots.length);
+        for (int root : roots) {
+            writeVarInt(out, root);
+        }
+    }
+
+    private static int addNode(List<Dependency> nodes, Map<Dependency, Integer> ids, Map<String, Integer> strings, Dependency dependency) {
+        Integer id = ids.get(dependency);
+        if (id != null) return id;
+        for (Dependency child : dependency.getDependencies()) {
+            addNode(nodes, ids, strings, child);
+        }
+        addString(strings, dependency.getGroup());
+        addString(strings, dependency.getName());
+        addString(strings, dependency.getVersion());
+        if (dependency.getRepo() != null) addString(strings, dependency.getRepo());
+        nodes.add(dependency);
+        ids.put(dependency, nodes.size() - 1);
+        return nodes.size() - 1;
+    }
+
+    private static void addString(Map<String, Integer> strings, String string) {
+        if (!strings.containsKey(string)) strings.put(string, strings.size());
+    }
+
+    public static List<Dependency> read(InputStream in) throws IOException {
+        byte[] header = new byte[MAGIC.length];
+        readFully(in, header, header.length);
+        if (!isManifest(header)) throw new IOException("Not a dependency manifest");
+        int version = readVarInt(in);
+        if (version != VERSION) throw new IOException("Unsupported dependency manifest version " + version);
+        String[] strings = new String[readVarInt(in)];
+        byte[] buffer = new byte[64];
+        for (int i = 0; i < strings.length; i++) {
+            int length = readVarInt(in);
+            if (length > buffer.length) buffer = new byte[Math.max(length, buffer.length * 2)];
+            readFully(in, buffer, length);
+            strings[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+        Dependency[] nodes = new Dependency[readVarInt(in)];
+        for (int i = 0; i < nodes.length; i++) {
+            String group = getString(strings, readVarInt(in));
+            String name = getString(strings, readVarInt(in));
+            String nodeVersion = getString(strings, readVarInt(in));
+            int repo = readVarInt(in);
+            int childCount = readVarInt(in);
+            List<Dependency> children = new ArrayList<>(childCount);
+            for (int child = 0; child < childCount; child++) {
+                children.add(getNode(nodes, i, readVarInt(in)));
+            }
+            nodes[i] = new Dependency(group, name, nodeVersion, repo == 0 ? null : getString(strings, repo - 1), children);
+        }
+        int rootCount = readVarInt(in);
+        List<Dependency> dependencies = new ArrayList<>(rootCount);
+        for (int root = 0; root < rootCount; root++) {
+            dependencies.add(getNode(nodes, nodes.length, readVarInt(in)));
+        }
+        return dependencies;
+    }
+
+    // Only nodes before the current one can be referenced, which also rules out cycles.
+    private static Dependency getNode(Dependency[] nodes, int before, int index) throws IOException {
+        if (index < 0 || index >= before) throw new IOException("Broken dependency manifest");
+        return nodes[index];
+    }
+
+    private static String getString(String[] strings, int index) throws IOException {
+        if (index < 0 || index >= strings.length) throw new IOException("Broken dependency manifest");
+        return strings[index];
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = in.read(buffer, read, length - read);
+            if (count < 0) throw new EOFException();
+            read += count;
+        }
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Broken dependency manifest");
+    }
+}
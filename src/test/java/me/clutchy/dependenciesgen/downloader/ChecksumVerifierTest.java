@@ -0,0 +1,83 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChecksumVerifierTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void hashesWithEveryAlgorithm() throws Exception {
+        Path file = Files.write(temp.resolve("abc.jar"), "abc".getBytes(StandardCharsets.US_ASCII));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", ChecksumVerifier.hash(file, HashAlgorithm.MD5));
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", ChecksumVerifier.hash(file, HashAlgorithm.SHA1));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", ChecksumVerifier.hash(file, HashAlgorithm.SHA256));
+        assertEquals("ddaf35a193617abacc417349ae20413112e6fa4e89a97ea20a9eeee64b55d39a2192992a274fc1a836ba3c23a3feebbd454d4423643ce80e2a9ac94fa54ca49f", ChecksumVerifier.hash(file, HashAlgorithm.SHA512));
+    }
+
+    @Test
+    void hashesEmptyFiles() throws Exception {
+        Path file = Files.createFile(temp.resolve("empty.jar"));
+        assertEquals("d41d8cd98f00b204e9800998ecf8427e", ChecksumVerifier.hash(file, HashAlgorithm.MD5));
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", ChecksumVerifier.hash(file, HashAlgorithm.SHA256));
+    }
+
+    @Test
+    void hashesOnlyTheStartWhenAsked() throws Exception {
+        byte[] bytes = TestRepository.jar(200 * 1024);
+        Path file = Files.write(temp.resolve("part.jar"), bytes);
+        MessageDigest digest = HashAlgorithm.SHA256.newDigest();
+        ChecksumVerifier.update(digest, file, 100_000);
+        assertEquals(ChecksumVerifier.toHexString(MessageDigest.getInstance("SHA-256").digest(Arrays.copyOf(bytes, 100_000))), ChecksumVerifier.toHexString(digest.digest()));
+    }
+
+    @Test
+    void parsesPublishedChecksums() {
+        String hash = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+        assertEquals(hash, ChecksumVerifier.parse(hash));
+        assertEquals(hash, ChecksumVerifier.parse(hash.toUpperCase() + "\n"));
+        assertEquals(hash, ChecksumVerifier.parse(hash + "  example-1.0.jar"));
+        assertEquals(hash, ChecksumVerifier.parse(hash + " *example-1.0.jar"));
+        assertEquals(hash, ChecksumVerifier.parse(hash + "\texample-1.0.jar"));
+        assertEquals(hash, ChecksumVerifier.parse("  " + hash + "  "));
+        assertNull(ChecksumVerifier.parse("   "));
+        assertNull(ChecksumVerifier.parse(null));
+    }
+
+    @Test
+    void streamsLargeFiles() throws Exception {
+        Path file = temp.resolve("large.jar");
+        MessageDigest expected = MessageDigest.getInstance("SHA-256");
+        byte[] chunk = TestRepository.jar(1024 * 1024);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < 64; i++) {
+                chunk[0] = (byte) i;
+                out.write(chunk);
+                expected.update(chunk);
+            }
+        }
+        // Warm up so the buffer pool and classes are loaded before measuring
+        ChecksumVerifier.hash(file, HashAlgorithm.MD5);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        String hash = ChecksumVerifier.hash(file, HashAlgorithm.SHA256);
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+        assertEquals(ChecksumVerifier.toHexString(expected.digest()), hash);
+        // 64MB hashed with well under a megabyte of heap
+        assertTrue(allocated < 1024 * 1024, "allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,103 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import me.clutchy.dependenciesgen.shared.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadResumeTest {
+
+    private static final String GROUP = "test.resume";
+    private static final int SIZE = 64 * 1024;
+    private static final int DROPPED_AT = 20000;
+
+    private final Logger logger = Logger.getLogger(DownloadResumeTest.class.getName());
+    private TestRepository repository;
+
+    @BeforeEach
+    void start() throws Exception {
+        repository = new TestRepository();
+    }
+
+    @AfterEach
+    void stop() {
+        repository.close();
+    }
+
+    @Test
+    void resumesDroppedConnection() throws Exception {
+        byte[] jar = TestRepository.jar(SIZE);
+        repository.put(GROUP, "dropped", "1.0", jar);
+        repository.dropAfter(DROPPED_AT);
+        DownloadResult.Artifact artifact = download(newDownloader(1), "dropped");
+        assertEquals(DownloadResult.Status.DOWNLOADED, artifact.getStatus());
+        assertArrayEquals(jar, Files.readAllBytes(artifact.getPath()));
+        assertTrue(getJarRequests("dropped").contains("GET " + TestRepository.getPath(GROUP, "dropped", "1.0") + " " + DROPPED_AT + "-"));
+        assertFalse(Files.exists(getPart("dropped")));
+    }
+
+    @Test
+    void resumesPartFromEarlierRun() throws Exception {
+        byte[] jar = TestRepository.jar(SIZE);
+        repository.put(GROUP, "restarted", "1.0", jar);
+        repository.dropAfter(DROPPED_AT);
+        assertThrows(ExecutionException.class, () -> download(newDownloader(0), "restarted"));
+        assertEquals(DROPPED_AT, Files.size(getPart("restarted")));
+        // A new downloader, like the next start, picks the part up again
+        DownloadResult.Artifact artifact = download(newDownloader(0), "restarted");
+        assertEquals(DownloadResult.Status.DOWNLOADED, artifact.getStatus());
+        assertArrayEquals(jar, Files.readAllBytes(artifact.getPath()));
+        assertTrue(getJarRequests("restarted").contains("GET " + TestRepository.getPath(GROUP, "restarted", "1.0") + " " + DROPPED_AT + "-"));
+        assertTrue(artifact.getBytesTransferred() < SIZE);
+    }
+
+    @Test
+    void startsOverWhenFileChanged() throws Exception {
+        repository.put(GROUP, "changed", "1.0", TestRepository.jar(SIZE));
+        repository.dropAfter(DROPPED_AT);
+        assertThrows(ExecutionException.class, () -> download(newDownloader(0), "changed"));
+        // Republished with other bytes, so the ETag no longer matches the part
+        byte[] jar = TestRepository.jar(SIZE + 1);
+        repository.put(GROUP, "changed", "1.0", jar);
+        DownloadResult.Artifact artifact = download(newDownloader(0), "changed");
+        assertEquals(DownloadResult.Status.DOWNLOADED, artifact.getStatus());
+        assertArrayEquals(jar, Files.readAllBytes(artifact.getPath()));
+        assertTrue(artifact.getBytesTransferred() >= jar.length);
+    }
+
+    private DependencyDownloader newDownloader(int retries) {
+        return new DependencyDownloader(null, logger).setRegistry(new ArtifactRegistry()).setRetries(retries, 10);
+    }
+
+    private DownloadResult.Artifact download(DependencyDownloader downloader, String name) throws Exception {
+        Dependency dependency = new Dependency(GROUP, name, "1.0", repository.getUrl(), new ArrayList<>());
+        DownloadResult result = downloader.downloadDependenciesAsync(Collections.singletonList(dependency), url -> {}).get(30, TimeUnit.SECONDS);
+        return result.getArtifacts().get(0);
+    }
+
+    private List<String> getJarRequests(String name) {
+        List<String> requests = new ArrayList<>(repository.getRequests());
+        requests.removeIf(request -> !request.startsWith("GET " + TestRepository.getPath(GROUP, name, "1.0") + " "));
+        return requests;
+    }
+
+    private static Path getPart(String name) {
+        return Paths.get("cache", GROUP.replace('.', '/'), name, "1.0", name + "-1.0.jar.part");
+    }
+}
@@ -0,0 +1,131 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import me.clutchy.dependenciesgen.shared.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DownloadRetryTest {
+
+    private static final String GROUP = "test.retry";
+
+    private final Logger logger = Logger.getLogger(DownloadRetryTest.class.getName());
+    private TestRepository repository;
+    private TestRepository fallback;
+
+    @BeforeEach
+    void start() throws Exception {
+        repository = new TestRepository();
+        fallback = new TestRepository();
+    }
+
+    @AfterEach
+    void stop() {
+        repository.close();
+        fallback.close();
+    }
+
+    @Test
+    void retriesServerErrors() throws Exception {
+        byte[] jar = TestRepository.jar(4096);
+        repository.put(GROUP, "server-errors", "1.0", jar);
+        repository.fail(2, 503);
+        DownloadResult.Artifact artifact = download(newDownloader(), new Dependency(GROUP, "server-errors", "1.0", repository.getUrl(), new ArrayList<>()));
+        assertEquals(DownloadResult.Status.DOWNLOADED, artifact.getStatus());
+        assertArrayEquals(jar, Files.readAllBytes(artifact.getPath()));
+        // Both failures were the same request being tried again
+        List<String> requests = repository.getRequests();
+        assertEquals(requests.get(0), requests.get(1));
+        assertEquals(requests.get(0), requests.get(2));
+    }
+
+    @Test
+    void retriesStalledReads() throws Exception {
+        byte[] jar = TestRepository.jar(4096);
+        repository.put(GROUP, "stalled", "1.0", jar);
+        repository.stall(1, 2000);
+        DownloadResult.Artifact artifact = download(newDownloader().setTimeouts(2000, 200), new Dependency(GROUP, "stalled", "1.0", repository.getUrl(), new ArrayList<>()));
+        assertEquals(DownloadResult.Status.DOWNLOADED, artifact.getStatus());
+        assertArrayEquals(jar, Files.readAllBytes(artifact.getPath()));
+    }
+
+    @Test
+    void movesOnWithoutRetryingMissingFiles() throws Exception {
+        byte[] jar = TestRepository.jar(4096);
+        fallback.put(GROUP, "missing", "1.0", jar);
+        DownloadResult.Artifact artifact = download(newDownloader().setRepositories(Collections.singletonList(fallback.getUrl())), new Dependency(GROUP, "missing", "1.0", repository.getUrl(), new ArrayList<>()));
+        assertEquals(DownloadResult.Status.DOWNLOADED, artifact.getStatus());
+        assertArrayEquals(jar, Files.readAllBytes(artifact.getPath()));
+        assertEquals(1, repository.count("GET", ".jar"));
+        assertEquals(1, fallback.count("GET", ".jar"));
+    }
+
+    @Test
+    void failsOverAfterRetries() throws Exception {
+        byte[] jar = TestRepository.jar(4096);
+        repository.put(GROUP, "broken", "1.0", jar);
+        repository.answer(500);
+        fallback.put(GROUP, "broken", "1.0", jar);
+        DownloadResult.Artifact artifact = download(newDownloader().setRepositories(Collections.singletonList(fallback.getUrl())), new Dependency(GROUP, "broken", "1.0", repository.getUrl(), new ArrayList<>()));
+        assertEquals(DownloadResult.Status.DOWNLOADED, artifact.getStatus());
+        assertArrayEquals(jar, Files.readAllBytes(artifact.getPath()));
+        // The first try and three retries, then the fallback
+        assertEquals(4, repository.count("GET", ".jar"));
+        assertEquals(1, fallback.count("GET", ".jar"));
+    }
+
+    @Test
+    void failsWhenEveryRepositoryFails() {
+        repository.answer(500);
+        DependencyDownloader downloader = newDownloader().setRepositories(Collections.singletonList(fallback.getUrl()));
+        Dependency dependency = new Dependency(GROUP, "nowhere", "1.0", repository.getUrl(), new ArrayList<>());
+        ExecutionException e = assertThrows(ExecutionException.class, () -> downloader.downloadDependenciesAsync(Collections.singletonList(dependency), url -> {}).get(30, TimeUnit.SECONDS));
+        DependencyDownloadException failure = assertInstanceOf(DependencyDownloadException.class, e.getCause());
+        assertEquals(DownloadResult.Status.FAILED, failure.getResult().getArtifacts().get(0).getStatus());
+        assertEquals(4, repository.count("GET", ".jar"));
+        assertEquals(1, fallback.count("GET", ".jar"));
+    }
+
+    @Test
+    void releasesTheClaimWhenTheSchedulerIsShutDown() throws Exception {
+        byte[] jar = TestRepository.jar(4096);
+        repository.put(GROUP, "rejected", "1.0", jar);
+        Dependency dependency = new Dependency(GROUP, "rejected", "1.0", repository.getUrl(), new ArrayList<>());
+        ArtifactRegistry registry = new ArtifactRegistry();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        DependencyDownloader rejected = new DependencyDownloader(null, logger, new DownloadScheduler(executor, 1)).setRegistry(registry);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.downloadDependenciesAsync(Collections.singletonList(dependency), url -> {}).get(30, TimeUnit.SECONDS));
+        DependencyDownloadException failure = assertInstanceOf(DependencyDownloadException.class, e.getCause());
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+        assertEquals(ArtifactRegistry.State.FAILED, registry.get(GROUP, "rejected").getState());
+        // The next downloader gets to claim it instead of waiting forever
+        DownloadResult.Artifact artifact = download(new DependencyDownloader(null, logger).setRegistry(registry), dependency);
+        assertEquals(DownloadResult.Status.DOWNLOADED, artifact.getStatus());
+    }
+
+    private DependencyDownloader newDownloader() {
+        return new DependencyDownloader(null, logger).setRegistry(new ArtifactRegistry()).setRetries(3, 10);
+    }
+
+    private DownloadResult.Artifact download(DependencyDownloader downloader, Dependency dependency) throws Exception {
+        DownloadResult result = downloader.downloadDependenciesAsync(Collections.singletonList(dependency), url -> {}).get(30, TimeUnit.SECONDS);
+        return result.getArtifacts().get(0);
+    }
+}
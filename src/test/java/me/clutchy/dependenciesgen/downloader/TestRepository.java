@@ -0,0 +1,170 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A maven repository on localhost that can be told to fail, stall or drop the connection.
+public class TestRepository implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger stalls = new AtomicInteger();
+    private volatile int failureStatus = 503;
+    private volatile int status = -1;
+    private volatile long delay = 0;
+    private volatile long dropAfter = -1;
+
+    public TestRepository() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    // Publishes the jar with its md5 like a maven repository would.
+    public void put(String group, String name, String version, byte[] jar) throws NoSuchAlgorithmException {
+        String path = getPath(group, name, version);
+        files.put(path, jar);
+        files.put(path + ".md5", toHex(MessageDigest.getInstance("MD5").digest(jar)).getBytes());
+    }
+
+    // The next count requests get this status instead of the file.
+    public TestRepository fail(int count, int status) {
+        failureStatus = status;
+        failures.set(count);
+        return this;
+    }
+
+    // Every request gets this status, -1 serves the files again.
+    public TestRepository answer(int status) {
+        this.status = status;
+        return this;
+    }
+
+    // The next count requests wait this long before answering.
+    public TestRepository stall(int count, long millis) {
+        delay = millis;
+        stalls.set(count);
+        return this;
+    }
+
+    // The next body is cut off after this many bytes.
+    public TestRepository dropAfter(long bytes) {
+        dropAfter = bytes;
+        return this;
+    }
+
+    // Method, path and range of every request so far, like "GET /a/b/1.0/b-1.0.jar bytes=10-".
+    public List<String> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    public long count(String method, String suffix) {
+        return getRequests().stream().filter(request -> request.startsWith(method + " ") && request.split(" ")[1].endsWith(suffix)).count();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            requests.add(exchange.getRequestMethod() + " " + path + (range == null ? "" : " " + range.substring(6)));
+            if (stalls.getAndDecrement() > 0) Thread.sleep(delay);
+            if (failures.getAndDecrement() > 0) {
+                exchange.sendResponseHeaders(failureStatus, -1);
+                return;
+            }
+            if (status > 0) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] file = files.get(path);
+            if (file == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            String etag = "\"" + Arrays.hashCode(file) + "\"";
+            exchange.getResponseHeaders().add("ETag", etag);
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+            int start = 0;
+            int code = 200;
+            // Like a real server the whole file comes back when If-Range no longer matches
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            if (range != null && (ifRange == null || ifRange.equals(etag))) {
+                start = Integer.parseInt(range.substring(6, range.indexOf('-')));
+                code = 206;
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (file.length - 1) + "/" + file.length);
+            }
+            int length = file.length - start;
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(length));
+                exchange.sendResponseHeaders(code, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(code, length);
+            OutputStream out = exchange.getResponseBody();
+            long drop = dropAfter;
+            if (drop >= 0 && drop < length) {
+                dropAfter = -1;
+                out.write(file, start, (int) drop);
+                out.flush();
+                // Closing before the promised length makes the server hang up on the client
+                return;
+            }
+            out.write(file, start, length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static String getPath(String group, String name, String version) {
+        return "/" + group.replace('.', '/') + "/" + name + "/" + version + "/" + name + "-" + version + ".jar";
+    }
+
+    public static byte[] jar(int size) {
+        byte[] jar = new byte[size];
+        for (int i = 0; i < size; i++) {
+            jar[i] = (byte) (i * 31 + 7);
+        }
+        return jar;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
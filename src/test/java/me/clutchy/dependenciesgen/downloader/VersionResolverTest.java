@@ -0,0 +1,102 @@
+package me.clutchy.dependenciesgen.downloader;
+
+import me.clutchy.dependenciesgen.shared.Dependency;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VersionResolverTest {
+
+    private static final String GROUP = "test.versions";
+
+    private final Logger logger = Logger.getLogger(VersionResolverTest.class.getName());
+
+    @Test
+    void ordersVersionsLikeMaven() {
+        List<String> ascending = Arrays.asList("1.0-alpha1", "1.0-alpha2", "1.0-beta1", "1.0-m1", "1.0-rc1", "1.0-SNAPSHOT", "1.0", "1.0-sp1", "1.0-foo", "1.0.1", "1.1", "1.2-rc1", "1.2", "1.10", "2.0");
+        for (int i = 0; i < ascending.size(); i++) {
+            for (int j = 0; j < ascending.size(); j++) {
+                int expected = Integer.compare(i, j);
+                assertEquals(expected, Integer.signum(VersionResolver.compare(ascending.get(i), ascending.get(j))), ascending.get(i) + " against " + ascending.get(j));
+            }
+        }
+    }
+
+    @Test
+    void treatsEquivalentVersionsAsEqual() {
+        assertEquals(0, VersionResolver.compare("1", "1.0.0"));
+        assertEquals(0, VersionResolver.compare("1.0", "1.0-ga"));
+        assertEquals(0, VersionResolver.compare("1.0", "1.0.final"));
+        assertEquals(0, VersionResolver.compare("1.0-RC1", "1.0-cr1"));
+        assertEquals(0, VersionResolver.compare("1.0a1", "1.0-alpha-1"));
+        assertEquals(0, VersionResolver.compare("2.0.0-Beta2", "2.0-b2"));
+        assertEquals(0, VersionResolver.compare("1-rc1", "1.0.0-rc1"));
+    }
+
+    @Test
+    void comparesNumbersAsNumbers() {
+        assertTrue(VersionResolver.compare("1.9", "1.10") < 0);
+        assertTrue(VersionResolver.compare("1.0.0.1", "1") > 0);
+        assertTrue(VersionResolver.compare("20210101", "3") > 0);
+        // A number is newer than any qualifier in the same place
+        assertTrue(VersionResolver.compare("1.0.1", "1.0-sp") > 0);
+        assertTrue(VersionResolver.compare("1.1", "1.0-sp5") > 0);
+    }
+
+    @Test
+    void picksNearestOrHighestOnConflict() {
+        // app -> a -> lib 1.0 and app -> b -> c -> lib 2.0
+        Dependency libOld = dependency("lib", "1.0");
+        Dependency libNew = dependency("lib", "2.0");
+        List<Dependency> roots = Collections.singletonList(dependency("app", "1.0", dependency("a", "1.0", libOld), dependency("b", "1.0", dependency("c", "1.0", libNew))));
+        assertEquals("1.0", getVersions(VersionResolver.resolve(roots, VersionResolver.Strategy.NEAREST, logger)).get("lib"));
+        assertEquals("2.0", getVersions(VersionResolver.resolve(roots, VersionResolver.Strategy.HIGHEST, logger)).get("lib"));
+    }
+
+    @Test
+    void dropsWhatOnlyTheLosingVersionNeeds() {
+        Dependency libOld = dependency("lib", "1.0", dependency("old-only", "1.0"));
+        Dependency libNew = dependency("lib", "2.0", dependency("new-only", "1.0"));
+        List<Dependency> roots = Collections.singletonList(dependency("app", "1.0", libOld, dependency("b", "1.0", libNew)));
+        Map<String, String> highest = getVersions(VersionResolver.resolve(roots, VersionResolver.Strategy.HIGHEST, logger));
+        assertTrue(highest.containsKey("new-only"));
+        assertFalse(highest.containsKey("old-only"));
+        Map<String, String> nearest = getVersions(VersionResolver.resolve(roots, VersionResolver.Strategy.NEAREST, logger));
+        assertTrue(nearest.containsKey("old-only"));
+        assertFalse(nearest.containsKey("new-only"));
+    }
+
+    @Test
+    void forgetsHigherVersionsOnlyAnEvictedVersionReached() {
+        // x 2 is only reached through lib 1.0, which loses to lib 2.0, so x 1 is the highest left
+        Dependency libOld = dependency("lib", "1.0", dependency("x", "2"));
+        Dependency libNew = dependency("lib", "2.0");
+        List<Dependency> roots = Arrays.asList(dependency("x", "1"), libOld, dependency("b", "1.0", libNew));
+        List<Dependency> resolved = VersionResolver.resolve(roots, VersionResolver.Strategy.HIGHEST, logger);
+        Map<String, String> versions = getVersions(resolved);
+        assertEquals("2.0", versions.get("lib"));
+        assertEquals("1", versions.get("x"));
+        // One of each
+        assertEquals(versions.size(), resolved.size());
+    }
+
+    private static Map<String, String> getVersions(List<Dependency> dependencies) {
+        Map<String, String> versions = new LinkedHashMap<>();
+        dependencies.forEach(dependency -> versions.put(dependency.getName(), dependency.getVersion()));
+        return versions;
+    }
+
+    private static Dependency dependency(String name, String version, Dependency... children) {
+        return new Dependency(GROUP, name, version, null, new ArrayList<>(Arrays.asList(children)));
+    }
+}
@@ -0,0 +1,141 @@
+package me.clutchy.dependenciesgen.gradle;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonStreamWriter;
+import me.clutchy.dependenciesgen.downloader.TestRepository;
+import me.clutchy.dependenciesgen.shared.Dependency;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ResolvedConfiguration;
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GenerateDependenciesTest {
+
+    private static final String GROUP = "test.diamond";
+    // Every layer depends on both modules of the next one, so the expanded tree doubles with each layer
+    private static final int LAYERS = 8;
+
+    private final Map<String, Integer> childLookups = new HashMap<>();
+    private TestRepository repository;
+
+    @BeforeEach
+    void start() throws Exception {
+        repository = new TestRepository();
+    }
+
+    @AfterEach
+    void stop() {
+        repository.close();
+    }
+
+    @Test
+    void resolvesAndProbesSharedModulesOnce() throws Exception {
+        Set<ResolvedDependency> roots = buildDiamonds();
+        List<String> repositories = Collections.singletonList(repository.getUrl());
+        ResolvedGraph graph = ResolvedGraph.of(configuration(roots), null, repositories, ResolutionMode.PROBE);
+        assertEquals(LAYERS * 2 + 1, graph.getModules().size());
+        childLookups.forEach((name, lookups) -> assertEquals(1, lookups, name));
+
+        List<Dependency> dependencies;
+        try (RepositoryProber prober = new RepositoryProber(4)) {
+            dependencies = GenerateDependencies.getAllDependencies(prober, repositories, Collections.emptySet(), graph);
+        }
+        for (String name : childLookups.keySet()) {
+            assertEquals(1, repository.count("HEAD", "/" + name + "-1.0.jar"), name);
+        }
+
+        // Same json the old plugin wrote by walking every path through the tree
+        JsonArray expected = new JsonArray();
+        for (ResolvedDependency root : roots) {
+            expected.add(expand(root).toJSON());
+        }
+        StringWriter written = new StringWriter();
+        try (JsonStreamWriter json = new JsonStreamWriter(written)) {
+            Dependency.writeJSON(dependencies, json);
+        }
+        assertEquals(expected.toString(), written.toString());
+    }
+
+    private Set<ResolvedDependency> buildDiamonds() throws Exception {
+        List<ResolvedDependency> below = new ArrayList<>();
+        for (int layer = LAYERS - 1; layer >= 0; layer--) {
+            List<ResolvedDependency> modules = new ArrayList<>();
+            for (String side : new String[]{"left", "right"}) {
+                String name = side + layer;
+                repository.put(GROUP, name, "1.0", TestRepository.jar(16));
+                modules.add(module(name, below));
+            }
+            below = modules;
+        }
+        repository.put(GROUP, "app", "1.0", TestRepository.jar(16));
+        return new LinkedHashSet<>(Collections.singletonList(module("app", below)));
+    }
+
+    private Dependency expand(ResolvedDependency depend) {
+        List<Dependency> children = new ArrayList<>();
+        for (ResolvedDependency child : depend.getChildren()) {
+            children.add(expand(child));
+        }
+        return new Dependency(depend.getModuleGroup(), depend.getModuleName(), depend.getModuleVersion(), repository.getUrl(), children);
+    }
+
+    // Just enough of gradle's resolved dependency for ResolvedGraph, counting how often each one's children are walked.
+    private ResolvedDependency module(String name, List<ResolvedDependency> children) {
+        Set<ResolvedDependency> parents = new LinkedHashSet<>();
+        ResolvedDependency module = (ResolvedDependency) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResolvedDependency.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getModuleGroup":
+                    return GROUP;
+                case "getModuleName":
+                    return name;
+                case "getModuleVersion":
+                    return "1.0";
+                case "getConfiguration":
+                    return "compile";
+                case "getParents":
+                    return parents;
+                case "getChildren":
+                    childLookups.merge(name, 1, Integer::sum);
+                    return new LinkedHashSet<>(children);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return name;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        childLookups.put(name, 0);
+        for (ResolvedDependency child : children) {
+            child.getParents().add(module);
+        }
+        return module;
+    }
+
+    private static Configuration configuration(Set<ResolvedDependency> roots) {
+        ResolvedConfiguration resolved = (ResolvedConfiguration) Proxy.newProxyInstance(GenerateDependenciesTest.class.getClassLoader(), new Class<?>[]{ResolvedConfiguration.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getFirstLevelModuleDependencies") && (args == null || args.length == 0)) return roots;
+            throw new UnsupportedOperationException(method.getName());
+        });
+        return (Configuration) Proxy.newProxyInstance(GenerateDependenciesTest.class.getClassLoader(), new Class<?>[]{Configuration.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getResolvedConfiguration")) return resolved;
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package me.clutchy.dependenciesgen.gradle;
+
+import me.clutchy.dependenciesgen.downloader.TestRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepositoryProberTest {
+
+    private static final String GROUP = "test.probe";
+
+    @TempDir
+    Path temp;
+    private final List<TestRepository> repositories = new ArrayList<>();
+
+    @BeforeEach
+    void start() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            repositories.add(new TestRepository());
+        }
+    }
+
+    @AfterEach
+    void stop() {
+        repositories.forEach(TestRepository::close);
+    }
+
+    @Test
+    void picksFirstRepositoryInOrder() throws Exception {
+        // The first one answers last but still wins
+        repositories.get(0).put(GROUP, "ordered", "1.0", TestRepository.jar(16));
+        repositories.get(0).stall(1, 500);
+        repositories.get(1).put(GROUP, "ordered", "1.0", TestRepository.jar(16));
+        try (RepositoryProber prober = new RepositoryProber(4)) {
+            assertEquals(repositories.get(0).getUrl(), prober.getRepo(getUrls(), GROUP, "ordered", "1.0"));
+        }
+    }
+
+    @Test
+    void skipsRepositoriesWithoutIt() throws Exception {
+        repositories.get(2).put(GROUP, "later", "1.0", TestRepository.jar(16));
+        try (RepositoryProber prober = new RepositoryProber(4)) {
+            assertEquals(repositories.get(2).getUrl(), prober.getRepo(getUrls(), GROUP, "later", "1.0"));
+        }
+    }
+
+    @Test
+    void probesInParallel() {
+        repositories.forEach(repository -> repository.stall(1, 500));
+        long start = System.nanoTime();
+        try (RepositoryProber prober = new RepositoryProber(4)) {
+            assertNull(prober.getRepo(getUrls(), GROUP, "parallel", "1.0"));
+        }
+        // One after the other would take at least 2 seconds
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+        repositories.forEach(repository -> assertEquals(1, repository.count("HEAD", ".jar")));
+    }
+
+    @Test
+    void cachesAnswers() throws Exception {
+        repositories.get(1).put(GROUP, "cached", "1.0", TestRepository.jar(16));
+        RepositoryCache cache = new RepositoryCache(temp.resolve("repositories.json"), TimeUnit.HOURS.toMillis(1));
+        try (RepositoryProber prober = new RepositoryProber(4, cache)) {
+            assertEquals(repositories.get(1).getUrl(), prober.getRepo(getUrls(), GROUP, "cached", "1.0"));
+            assertNull(prober.getRepo(getUrls(), GROUP, "nowhere", "1.0"));
+        }
+        cache.save();
+        // A new build reads the answers back without asking any repository
+        RepositoryCache loaded = new RepositoryCache(temp.resolve("repositories.json"), TimeUnit.HOURS.toMillis(1));
+        try (RepositoryProber prober = new RepositoryProber(4, loaded)) {
+            assertEquals(repositories.get(1).getUrl(), prober.getRepo(getUrls(), GROUP, "cached", "1.0"));
+            assertNull(prober.getRepo(getUrls(), GROUP, "nowhere", "1.0"));
+        }
+        assertEquals(1, repositories.get(1).count("HEAD", "nowhere-1.0.jar"));
+        assertEquals(1, repositories.get(1).count("HEAD", "cached-1.0.jar"));
+    }
+
+    @Test
+    void treatsForbiddenAsMissing() throws Exception {
+        // Private or bucket backed repositories answer without credentials like this
+        repositories.get(0).answer(401);
+        repositories.get(1).answer(403);
+        repositories.get(2).put(GROUP, "private", "1.0", TestRepository.jar(16));
+        RepositoryCache cache = new RepositoryCache(temp.resolve("repositories.json"), TimeUnit.HOURS.toMillis(1));
+        try (RepositoryProber prober = new RepositoryProber(4, cache)) {
+            assertEquals(repositories.get(2).getUrl(), prober.getRepo(getUrls(), GROUP, "private", "1.0"));
+            assertNull(prober.getRepo(getUrls(), GROUP, "nowhere", "1.0"));
+        }
+        assertEquals(repositories.get(2).getUrl(), cache.get(getUrls(), GROUP, "private", "1.0").getRepo());
+        assertNull(cache.get(getUrls(), GROUP, "nowhere", "1.0").getRepo());
+    }
+
+    @Test
+    void doesNotCacheErrors() throws Exception {
+        repositories.get(1).answer(500);
+        RepositoryCache cache = new RepositoryCache(temp.resolve("repositories.json"), TimeUnit.HOURS.toMillis(1));
+        try (RepositoryProber prober = new RepositoryProber(4, cache)) {
+            assertNull(prober.getRepo(getUrls(), GROUP, "unreachable", "1.0"));
+        }
+        assertNull(cache.get(getUrls(), GROUP, "unreachable", "1.0"));
+        // Found after the broken one might not be the first repository that has it
+        repositories.get(2).put(GROUP, "after", "1.0", TestRepository.jar(16));
+        try (RepositoryProber prober = new RepositoryProber(4, cache)) {
+            assertEquals(repositories.get(2).getUrl(), prober.getRepo(getUrls(), GROUP, "after", "1.0"));
+        }
+        assertNull(cache.get(getUrls(), GROUP, "after", "1.0"));
+        // Found before the broken one is a sure answer
+        repositories.get(0).put(GROUP, "found", "1.0", TestRepository.jar(16));
+        try (RepositoryProber prober = new RepositoryProber(4, cache)) {
+            assertEquals(repositories.get(0).getUrl(), prober.getRepo(getUrls(), GROUP, "found", "1.0"));
+        }
+        assertEquals(repositories.get(0).getUrl(), cache.get(getUrls(), GROUP, "found", "1.0").getRepo());
+    }
+
+    private List<String> getUrls() {
+        List<String> urls = new ArrayList<>();
+        repositories.forEach(repository -> urls.add(repository.getUrl()));
+        return urls;
+    }
+}